@@ -0,0 +1,72 @@
+package ru.pokrasko.pgd.benchmarks;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Verticle;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.json.JsonObject;
+import ru.pokrasko.pgd.generator.Generator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+
+public class BenchmarkInputs {
+    private static final double MAX_ABSOLUTE_WEIGHT = 100.0;
+    private static final double MAX_ABSOLUTE_COORD = 100.0;
+
+    private static final long BLOCKED_THREAD_CHECK_INTERVAL = 120000;
+
+    public static String generate(int size, int dimensiality) throws IOException {
+        File input = temporaryFile(".data");
+        File weights = temporaryFile(".txt");
+        Generator.main(new String[]{input.getPath(), Integer.toString(size), Integer.toString(dimensiality),
+                Double.toString(MAX_ABSOLUTE_WEIGHT), Double.toString(MAX_ABSOLUTE_COORD), weights.getPath()});
+        return input.getPath();
+    }
+
+    public static String temporaryFilename(String suffix) throws IOException {
+        return temporaryFile(suffix).getPath();
+    }
+
+    public static Vertx startVertx() {
+        return Vertx.vertx(new VertxOptions().setBlockedThreadCheckInterval(BLOCKED_THREAD_CHECK_INTERVAL));
+    }
+
+    public static String deploy(Vertx vertx, Verticle verticle, JsonObject config) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        String[] deploymentId = new String[1];
+        vertx.deployVerticle(verticle, new DeploymentOptions().setConfig(config), res -> {
+            if (res.succeeded()) {
+                deploymentId[0] = res.result();
+            } else {
+                res.cause().printStackTrace();
+            }
+            latch.countDown();
+        });
+        latch.await();
+        return deploymentId[0];
+    }
+
+    public static void undeploy(Vertx vertx, String deploymentId) throws InterruptedException {
+        if (deploymentId == null) {
+            return;
+        }
+        CountDownLatch latch = new CountDownLatch(1);
+        vertx.undeploy(deploymentId, res -> latch.countDown());
+        latch.await();
+    }
+
+    public static void close(Vertx vertx) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        vertx.close(res -> latch.countDown());
+        latch.await();
+    }
+
+    private static File temporaryFile(String suffix) throws IOException {
+        File file = Files.createTempFile("pgd-benchmark-", suffix).toFile();
+        file.deleteOnExit();
+        return file;
+    }
+}
@@ -0,0 +1,69 @@
+package ru.pokrasko.pgd.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.pokrasko.pgd.common.Dataset;
+import ru.pokrasko.pgd.common.GradientDescent;
+import ru.pokrasko.pgd.common.InputFileReader;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class GradientDescentBenchmark {
+    @Param({"100000", "1000000"})
+    private int size;
+
+    @Param({"10", "100"})
+    private int dimensiality;
+
+    private Dataset dataset;
+    private double[] oldWeights;
+    private double[] weights;
+    private double[] oldGradient;
+    private double[] gradient;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataset = new InputFileReader(BenchmarkInputs.generate(size, dimensiality)).getDataset();
+
+        Random random = new Random(0);
+        oldWeights = random.doubles(dimensiality + 1, -1.0, 1.0).toArray();
+        weights = random.doubles(dimensiality + 1, -1.0, 1.0).toArray();
+        oldGradient = random.doubles(dimensiality + 1, -1.0, 1.0).toArray();
+        gradient = new double[dimensiality + 1];
+    }
+
+    @Benchmark
+    public double costFunction() {
+        return GradientDescent.costFunction(weights, dataset);
+    }
+
+    @Benchmark
+    public double[] pointGradient() {
+        for (int i = 0; i < weights.length; i++) {
+            double gradientSum = 0;
+            for (int j = 0; j < dataset.size(); j++) {
+                gradientSum += GradientDescent.pointGradient(i, weights, dataset, j);
+            }
+            gradient[i] = gradientSum / dataset.size();
+        }
+        return gradient;
+    }
+
+    @Benchmark
+    public double costAndGradient() {
+        return GradientDescent.costAndGradient(weights, dataset, gradient);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public double updateGradientStep() {
+        return GradientDescent.updateGradientStep(oldWeights, weights, oldGradient, gradient);
+    }
+}
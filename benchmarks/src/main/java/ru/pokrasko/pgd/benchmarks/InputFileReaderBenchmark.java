@@ -0,0 +1,52 @@
+package ru.pokrasko.pgd.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.pokrasko.pgd.common.Dataset;
+import ru.pokrasko.pgd.common.InputFileReader;
+import ru.pokrasko.pgd.common.MappedInputFileReader;
+import ru.pokrasko.pgd.common.StreamingInputFileReader;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class InputFileReaderBenchmark {
+    private static final int CHUNK_SIZE = 65536;
+
+    @Param({"100000", "1000000"})
+    private int size;
+
+    @Param({"10", "100"})
+    private int dimensiality;
+
+    private String inputFilename;
+    private double[] weights;
+    private double[] gradient;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        inputFilename = BenchmarkInputs.generate(size, dimensiality);
+        weights = new double[dimensiality + 1];
+        gradient = new double[dimensiality + 1];
+    }
+
+    @Benchmark
+    public Dataset parse() throws IOException {
+        return new InputFileReader(inputFilename).getDataset();
+    }
+
+    @Benchmark
+    public double mapAndPass() throws IOException {
+        return new MappedInputFileReader(inputFilename).getDataset().accumulate(weights, gradient);
+    }
+
+    @Benchmark
+    public double streamingPass() throws IOException {
+        return new StreamingInputFileReader(inputFilename, CHUNK_SIZE).getDataset().accumulate(weights, gradient);
+    }
+}
@@ -0,0 +1,42 @@
+package ru.pokrasko.pgd.benchmarks;
+
+import io.vertx.core.buffer.Buffer;
+import org.openjdk.jmh.annotations.*;
+import ru.pokrasko.pgd.parallel.LocalSumsBenchmarkSupport;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class LocalSumsMessageCodecBenchmark {
+    @Param({"10", "100", "1000"})
+    private int dimensiality;
+
+    private LocalSumsBenchmarkSupport support;
+    private Buffer encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(0);
+        support = new LocalSumsBenchmarkSupport(random.nextDouble(), random.doubles(dimensiality + 1).toArray(),
+                random.nextInt(), random.nextLong());
+        encoded = encode();
+    }
+
+    @Benchmark
+    public Buffer encode() {
+        Buffer buffer = Buffer.buffer();
+        support.encode(buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public Object decode() {
+        return support.decode(0, encoded);
+    }
+}
@@ -0,0 +1,81 @@
+package ru.pokrasko.pgd.benchmarks;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.*;
+import ru.pokrasko.pgd.common.OptimizerOptions;
+import ru.pokrasko.pgd.forkjoin.ForkJoinOptimizer;
+import ru.pokrasko.pgd.parallel.ParallelMainVerticle;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(OptimizerIterationsBenchmark.ITERATIONS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class OptimizerIterationsBenchmark {
+    static final int ITERATIONS = 100;
+
+    @Param({"1000000"})
+    private int size;
+
+    @Param({"10", "100"})
+    private int dimensiality;
+
+    @Param({"1", "2", "4", "8"})
+    private int workers;
+
+    private JsonObject config;
+    private Vertx vertx;
+    private String deploymentId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        config = iterationsConfig(size, dimensiality)
+                .put(ParallelMainVerticle.SLAVES_CONFIG_KEY, workers)
+                .put(ForkJoinOptimizer.THREADS_CONFIG_KEY, workers);
+        vertx = BenchmarkInputs.startVertx();
+    }
+
+    @TearDown(Level.Invocation)
+    public void undeploy() throws InterruptedException {
+        BenchmarkInputs.undeploy(vertx, deploymentId);
+        deploymentId = null;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        BenchmarkInputs.close(vertx);
+    }
+
+    @Benchmark
+    public void forkJoin() throws InterruptedException {
+        deploymentId = BenchmarkInputs.deploy(vertx, new ForkJoinOptimizer() {
+            @Override
+            protected void exit() {
+            }
+        }, config);
+    }
+
+    @Benchmark
+    public void parallel() throws InterruptedException {
+        deploymentId = BenchmarkInputs.deploy(vertx, new ParallelMainVerticle() {
+            @Override
+            protected void exit() {
+            }
+        }, config);
+    }
+
+    static JsonObject iterationsConfig(int size, int dimensiality) throws IOException {
+        return new JsonObject()
+                .put(OptimizerOptions.INPUT_CONFIG_KEY, BenchmarkInputs.generate(size, dimensiality))
+                .put(OptimizerOptions.OUTPUT_CONFIG_KEY, BenchmarkInputs.temporaryFilename(".txt"))
+                .put(OptimizerOptions.CONVERGENCE_CONFIG_KEY, 0.0)
+                .put(OptimizerOptions.MAX_ITERATIONS_CONFIG_KEY, ITERATIONS)
+                .put(OptimizerOptions.MAPPED_CONFIG_KEY, true);
+    }
+}
@@ -0,0 +1,54 @@
+package ru.pokrasko.pgd.benchmarks;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.*;
+import ru.pokrasko.pgd.singleflow.SingleFlowOptimizer;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(OptimizerIterationsBenchmark.ITERATIONS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SingleFlowIterationsBenchmark {
+    @Param({"1000000"})
+    private int size;
+
+    @Param({"10", "100"})
+    private int dimensiality;
+
+    private JsonObject config;
+    private Vertx vertx;
+    private String deploymentId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        config = OptimizerIterationsBenchmark.iterationsConfig(size, dimensiality);
+        vertx = BenchmarkInputs.startVertx();
+    }
+
+    @TearDown(Level.Invocation)
+    public void undeploy() throws InterruptedException {
+        BenchmarkInputs.undeploy(vertx, deploymentId);
+        deploymentId = null;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        BenchmarkInputs.close(vertx);
+    }
+
+    @Benchmark
+    public void singleFlow() throws InterruptedException {
+        deploymentId = BenchmarkInputs.deploy(vertx, new SingleFlowOptimizer() {
+            @Override
+            protected void exit() {
+            }
+        }, config);
+    }
+}
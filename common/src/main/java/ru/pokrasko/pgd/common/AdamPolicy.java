@@ -0,0 +1,62 @@
+package ru.pokrasko.pgd.common;
+
+import java.util.function.DoubleUnaryOperator;
+
+class AdamPolicy extends StepPolicy {
+    private static final double SECOND_MOMENT_DECAY = 0.999;
+    private static final double EPSILON = 1e-8;
+
+    private final double learningRate;
+    private final double firstMomentDecay;
+
+    private double[] firstMoments;
+    private double[] secondMoments;
+    private int steps;
+
+    AdamPolicy(double learningRate, double firstMomentDecay) {
+        this.learningRate = learningRate;
+        this.firstMomentDecay = firstMomentDecay;
+    }
+
+    @Override
+    public Type type() {
+        return Type.ADAM;
+    }
+
+    @Override
+    public double update(double[] weights, double costFunction, double[] gradient, DoubleUnaryOperator lineCost,
+                         double[] newWeights) {
+        if (firstMoments == null) {
+            firstMoments = new double[gradient.length];
+            secondMoments = new double[gradient.length];
+        }
+
+        steps++;
+        double firstCorrection = 1 - Math.pow(firstMomentDecay, steps);
+        double secondCorrection = 1 - Math.pow(SECOND_MOMENT_DECAY, steps);
+        for (int i = 0; i < weights.length; i++) {
+            firstMoments[i] = firstMomentDecay * firstMoments[i] + (1 - firstMomentDecay) * gradient[i];
+            secondMoments[i] = SECOND_MOMENT_DECAY * secondMoments[i]
+                    + (1 - SECOND_MOMENT_DECAY) * gradient[i] * gradient[i];
+            newWeights[i] = weights[i] - learningRate * firstMoments[i] / firstCorrection
+                    / (Math.sqrt(secondMoments[i] / secondCorrection) + EPSILON);
+        }
+        return learningRate;
+    }
+
+    @Override
+    public double[][] state() {
+        return firstMoments != null
+                ? new double[][] {firstMoments, secondMoments, {steps}}
+                : new double[0][];
+    }
+
+    @Override
+    public void restore(double[][] state) {
+        if (state.length == 3 && state[2].length == 1) {
+            firstMoments = state[0];
+            secondMoments = state[1];
+            steps = (int) state[2][0];
+        }
+    }
+}
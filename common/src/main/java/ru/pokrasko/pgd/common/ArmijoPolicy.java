@@ -0,0 +1,43 @@
+package ru.pokrasko.pgd.common;
+
+import java.util.function.DoubleUnaryOperator;
+
+class ArmijoPolicy extends BarzilaiBorweinPolicy {
+    private static final double SUFFICIENT_DECREASE = 1e-4;
+    private static final double BACKTRACKING_FACTOR = 0.5;
+    private static final int MAX_BACKTRACKS = 100;
+
+    @Override
+    public Type type() {
+        return Type.ARMIJO;
+    }
+
+    @Override
+    public boolean searchesLine() {
+        return true;
+    }
+
+    @Override
+    public double update(double[] weights, double costFunction, double[] gradient, DoubleUnaryOperator lineCost,
+                         double[] newWeights) {
+        double gradientSquare = GradientDescent.dotProduct(gradient, gradient);
+        double gradientStep = spectralStep(weights, gradient);
+        int backtracks = 0;
+        while (lineCost.applyAsDouble(gradientStep)
+                > costFunction - SUFFICIENT_DECREASE * gradientStep * gradientSquare) {
+            if (++backtracks > MAX_BACKTRACKS) {
+                gradientStep = 0;
+                break;
+            }
+            gradientStep *= BACKTRACKING_FACTOR;
+        }
+        if (gradientStep > 0) {
+            acceptStep(gradientStep);
+        }
+
+        for (int i = 0; i < weights.length; i++) {
+            newWeights[i] = weights[i] - gradientStep * gradient[i];
+        }
+        return gradientStep;
+    }
+}
@@ -0,0 +1,57 @@
+package ru.pokrasko.pgd.common;
+
+import java.util.function.DoubleUnaryOperator;
+
+class BarzilaiBorweinPolicy extends StepPolicy {
+    private static final double INITIAL_STEP = 1.0;
+
+    private double[] oldWeights;
+    private double[] oldGradient;
+    private double gradientStep = INITIAL_STEP;
+
+    @Override
+    public Type type() {
+        return Type.BB;
+    }
+
+    @Override
+    public double update(double[] weights, double costFunction, double[] gradient, DoubleUnaryOperator lineCost,
+                         double[] newWeights) {
+        double gradientStep = spectralStep(weights, gradient);
+        for (int i = 0; i < weights.length; i++) {
+            newWeights[i] = weights[i] - gradientStep * gradient[i];
+        }
+        return gradientStep;
+    }
+
+    double spectralStep(double[] weights, double[] gradient) {
+        if (oldWeights != null) {
+            gradientStep = GradientDescent.updateGradientStep(oldWeights, weights, oldGradient, gradient,
+                    gradientStep);
+        } else {
+            oldWeights = new double[weights.length];
+            oldGradient = new double[gradient.length];
+        }
+        System.arraycopy(weights, 0, oldWeights, 0, weights.length);
+        System.arraycopy(gradient, 0, oldGradient, 0, gradient.length);
+        return gradientStep;
+    }
+
+    void acceptStep(double gradientStep) {
+        this.gradientStep = gradientStep;
+    }
+
+    @Override
+    public double[][] state() {
+        return oldWeights != null ? new double[][] {oldWeights, oldGradient, {gradientStep}} : new double[0][];
+    }
+
+    @Override
+    public void restore(double[][] state) {
+        if (state.length == 3 && state[2].length == 1) {
+            oldWeights = state[0];
+            oldGradient = state[1];
+            gradientStep = state[2][0];
+        }
+    }
+}
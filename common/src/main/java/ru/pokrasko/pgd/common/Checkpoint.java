@@ -0,0 +1,181 @@
+package ru.pokrasko.pgd.common;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+public class Checkpoint {
+    private static final int MAGIC = 0x50474443;
+    private static final int FORMAT_VERSION = 1;
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final int iterations;
+    private final int epochs;
+    private final double costFunction;
+    private final double[] weights;
+    private final StepPolicy.Type stepType;
+    private final double[][] stepState;
+
+    public Checkpoint(int iterations, int epochs, double costFunction, double[] weights,
+                      StepPolicy.Type stepType, double[][] stepState) {
+        if (stepType == null != (stepState == null)) {
+            throw new IllegalArgumentException("Step policy type and state should be both present or absent");
+        }
+
+        this.iterations = iterations;
+        this.epochs = epochs;
+        this.costFunction = costFunction;
+        this.weights = weights;
+        this.stepType = stepType;
+        this.stepState = stepState;
+    }
+
+    public static Checkpoint restore(String checkpointFilename, boolean resume, String initialWeightsFilename,
+                                     int dimensiality) throws IOException {
+        if (resume) {
+            if (checkpointFilename == null) {
+                throw new IllegalArgumentException("You should specify checkpoint file name to resume from it");
+            }
+            if (Files.exists(Paths.get(checkpointFilename))) {
+                Checkpoint checkpoint = read(checkpointFilename);
+                if (checkpoint.weights.length != dimensiality + 1) {
+                    throw new IllegalArgumentException("Checkpoint dimensiality doesn't match the input file");
+                }
+                System.out.printf("Resuming from checkpoint after %d iterations\n", checkpoint.iterations);
+                return checkpoint;
+            }
+            System.err.printf("Checkpoint file \"%s\" doesn't exist, the optimization is started anew\n",
+                    checkpointFilename);
+        }
+
+        double[] weights;
+        if (initialWeightsFilename != null) {
+            weights = GradientDescent.readWeightsFromFile(initialWeightsFilename);
+            if (weights.length != dimensiality + 1) {
+                throw new IllegalArgumentException("Initial weights dimensiality doesn't match the input file");
+            }
+        } else {
+            weights = new double[dimensiality + 1];
+            Arrays.fill(weights, 1.0);
+        }
+        return new Checkpoint(0, 0, 0.0, weights, null, null);
+    }
+
+    public static Checkpoint read(String filename) throws IOException {
+        try (DataInputStream stream = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(Paths.get(filename))))) {
+            int formatVersion = stream.readInt() == MAGIC ? stream.readInt() : -1;
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException("\"" + filename + "\" is not a checkpoint file");
+            }
+
+            int iterations = stream.readInt();
+            int epochs = stream.readInt();
+            double costFunction = stream.readDouble();
+            double[] weights = readDoubles(stream);
+            StepPolicy.Type stepType = null;
+            double[][] stepState = null;
+            if (stream.readBoolean()) {
+                stepType = readStepType(stream, filename);
+                stepState = new double[stream.readInt()][];
+                for (int i = 0; i < stepState.length; i++) {
+                    stepState[i] = readDoubles(stream);
+                }
+            }
+            return new Checkpoint(iterations, epochs, costFunction, weights, stepType, stepState);
+        }
+    }
+
+    public void write(String filename) throws IOException {
+        Path path = Paths.get(filename);
+        Path temporaryPath = Paths.get(filename + TEMPORARY_SUFFIX);
+        try (DataOutputStream stream = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporaryPath)))) {
+            stream.writeInt(MAGIC);
+            stream.writeInt(FORMAT_VERSION);
+            stream.writeInt(iterations);
+            stream.writeInt(epochs);
+            stream.writeDouble(costFunction);
+            writeDoubles(stream, weights);
+            stream.writeBoolean(stepType != null);
+            if (stepType != null) {
+                stream.writeInt(stepType.ordinal());
+                stream.writeInt(stepState.length);
+                for (double[] values : stepState) {
+                    writeDoubles(stream, values);
+                }
+            }
+        }
+        Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public boolean tryWrite(String filename) {
+        try {
+            write(filename);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Couldn't write checkpoint: " + e.getLocalizedMessage());
+            return false;
+        }
+    }
+
+    public int iterations() {
+        return iterations;
+    }
+
+    public int epochs() {
+        return epochs;
+    }
+
+    public double costFunction() {
+        return costFunction;
+    }
+
+    public double[] weights() {
+        return weights;
+    }
+
+    public StepPolicy.Type stepType() {
+        return stepType;
+    }
+
+    public double[][] stepState() {
+        return stepState;
+    }
+
+    public void restoreStepPolicy(StepPolicy stepPolicy) {
+        if (stepType == stepPolicy.type()) {
+            stepPolicy.restore(stepState);
+        }
+    }
+
+    private static StepPolicy.Type readStepType(DataInputStream stream, String filename) throws IOException {
+        int ordinal = stream.readInt();
+        if (ordinal < 0 || ordinal >= StepPolicy.Type.values().length) {
+            throw new IOException("\"" + filename + "\" has an unknown step policy");
+        }
+        return StepPolicy.Type.values()[ordinal];
+    }
+
+    private static double[] readDoubles(DataInputStream stream) throws IOException {
+        double[] values = new double[stream.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = stream.readDouble();
+        }
+        return values;
+    }
+
+    private static void writeDoubles(DataOutputStream stream, double[] values) throws IOException {
+        stream.writeInt(values.length);
+        for (double value : values) {
+            stream.writeDouble(value);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package ru.pokrasko.pgd.common;
+
+public interface Dataset {
+    int size();
+
+    int dimensiality();
+
+    double coord(int row, int index);
+
+    double value(int row);
+
+    Dataset subset(int from, int to);
+
+    double accumulate(double[] weights, double[] gradient);
+
+    double accumulate(double[] weights, double[] gradient, int[] rows, int from, int to);
+
+    default double[] directionalSums(double[] weights, double[] direction) {
+        return GradientDescent.directionalSums(weights, direction, this);
+    }
+
+    default void forEach(RowVisitor visitor) {
+        double[] coords = new double[dimensiality()];
+        for (int i = 0; i < size(); i++) {
+            for (int j = 0; j < coords.length; j++) {
+                coords[j] = coord(i, j);
+            }
+            visitor.visit(coords, 0, value(i));
+        }
+    }
+
+    default void close() {
+    }
+}
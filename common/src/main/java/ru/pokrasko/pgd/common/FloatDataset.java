@@ -0,0 +1,75 @@
+package ru.pokrasko.pgd.common;
+
+public class FloatDataset implements Dataset {
+    final float[] coords;
+    final float[] values;
+    final int offset;
+    final int size;
+    final int dimensiality;
+
+    public FloatDataset(int dimensiality, float[] coords, float[] values) {
+        this(dimensiality, coords, values, 0, values.length);
+    }
+
+    private FloatDataset(int dimensiality, float[] coords, float[] values, int offset, int size) {
+        assert coords.length == values.length * dimensiality;
+
+        this.coords = coords;
+        this.values = values;
+        this.offset = offset;
+        this.size = size;
+        this.dimensiality = dimensiality;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int dimensiality() {
+        return dimensiality;
+    }
+
+    @Override
+    public double coord(int row, int index) {
+        assert row >= 0 && row < size && index >= 0 && index < dimensiality;
+
+        return coords[(offset + row) * dimensiality + index];
+    }
+
+    @Override
+    public double value(int row) {
+        assert row >= 0 && row < size;
+
+        return values[offset + row];
+    }
+
+    @Override
+    public double accumulate(double[] weights, double[] gradient) {
+        return GradientDescent.accumulate(weights, coords, values, offset, offset + size, gradient);
+    }
+
+    @Override
+    public double accumulate(double[] weights, double[] gradient, int[] rows, int from, int to) {
+        return GradientDescent.accumulate(weights, coords, values, offset, rows, from, to, gradient);
+    }
+
+    @Override
+    public void forEach(RowVisitor visitor) {
+        double[] row = new double[dimensiality];
+        for (int i = offset; i < offset + size; i++) {
+            for (int j = 0; j < dimensiality; j++) {
+                row[j] = coords[i * dimensiality + j];
+            }
+            visitor.visit(row, 0, values[i]);
+        }
+    }
+
+    @Override
+    public FloatDataset subset(int from, int to) {
+        assert from >= 0 && from <= to && to <= size;
+
+        return new FloatDataset(dimensiality, coords, values, offset + from, to - from);
+    }
+}
@@ -3,47 +3,78 @@ package ru.pokrasko.pgd.common;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.function.BiFunction;
+import java.nio.DoubleBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.function.DoubleUnaryOperator;
 import java.util.stream.Collectors;
 
 public class GradientDescent {
-    public static double updateGradientStep(List<Double> oldWeights, List<Double> newWeights,
-                                            List<Double> oldGradient, List<Double> newGradient) {
-        return Math.abs(
-                dotProduct(difference(newWeights, oldWeights), difference(newGradient, oldGradient))
-                / distanceSquare(newGradient, oldGradient)
-        );
+    private static final String KERNEL_PROPERTY = "pgd.kernel";
+    private static final String SCALAR_KERNEL = "scalar";
+    private static final String VECTOR_KERNEL_CLASS_NAME = "ru.pokrasko.pgd.vector.VectorGradientKernel";
+
+    private static final GradientKernel KERNEL = loadKernel();
+
+    public static double updateGradientStep(double[] oldWeights, double[] newWeights,
+                                            double[] oldGradient, double[] newGradient) {
+        assert oldWeights.length == newWeights.length && oldGradient.length == newGradient.length;
+
+        double dotProduct = 0;
+        for (int i = 0; i < newWeights.length; i++) {
+            dotProduct += (newWeights[i] - oldWeights[i]) * (newGradient[i] - oldGradient[i]);
+        }
+        return Math.abs(dotProduct / distanceSquare(newGradient, oldGradient));
+    }
+
+    public static double updateGradientStep(double[] oldWeights, double[] newWeights,
+                                            double[] oldGradient, double[] newGradient, double fallbackStep) {
+        double gradientStep = updateGradientStep(oldWeights, newWeights, oldGradient, newGradient);
+        return Double.isFinite(gradientStep) && gradientStep > 0 ? gradientStep : fallbackStep;
     }
 
-    public static double pointGradient(int coordIndex, List<Double> weights, Point point) {
-        assert coordIndex >= 0 && coordIndex < weights.size();
+    public static double[] directionalSums(double[] weights, double[] direction, Dataset dataset) {
+        assert weights.length == dataset.dimensiality() + 1 && direction.length == weights.length;
 
-        double coord = (coordIndex != point.coords.size()) ? point.coords.get(coordIndex) : 1.0;
-        return residual(weights, point) * coord;
+        double[] sums = new double[2];
+        dataset.forEach((coords, offset, value) -> {
+            double residual = linearValue(weights, coords, offset) - value;
+            double directional = linearValue(direction, coords, offset);
+            sums[0] += residual * directional;
+            sums[1] += directional * directional;
+        });
+        return sums;
     }
 
-    public static boolean checkConvergence(double oldCostFunction, double newCostFunction, double convergence) {
-        return Math.abs(newCostFunction - oldCostFunction) < convergence;
+    public static DoubleUnaryOperator lineCost(double costFunction, double[] directionalSums, long size) {
+        return step -> costFunction + (step * directionalSums[1] - 2 * directionalSums[0]) * step / size;
+    }
+
+    public static double pointGradient(int coordIndex, double[] weights, Dataset dataset, int row) {
+        assert coordIndex >= 0 && coordIndex < weights.length;
+
+        double coord = (coordIndex != dataset.dimensiality()) ? dataset.coord(row, coordIndex) : 1.0;
+        return residual(weights, dataset, row) * coord;
     }
 
-    public static int dimensiality(List<Point> points) {
-        return points.get(0).coords.size();
+    public static boolean checkConvergence(double oldCostFunction, double newCostFunction, double convergence) {
+        return Math.abs(newCostFunction - oldCostFunction) < convergence;
     }
 
-    public static void printWeightsToSystemOut(List<Double> weights) {
+    public static void printWeightsToSystemOut(double[] weights) {
         System.out.print("Features weights:");
-        for (int i = 0; i < weights.size() - 1; i++) {
-            System.out.print(" " + weights.get(i));
+        for (int i = 0; i < weights.length - 1; i++) {
+            System.out.print(" " + weights[i]);
         }
         System.out.println();
-        System.out.println("Constant weight: " + weights.get(weights.size() - 1));
+        System.out.println("Constant weight: " + weights[weights.length - 1]);
     }
 
-    public static boolean printWeightsToFile(List<Double> weights, String filename) {
+    public static boolean printWeightsToFile(double[] weights, String filename) {
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
-            writer.write(weights.stream().map(Object::toString).collect(Collectors.joining(" ")));
+            writer.write(Arrays.stream(weights).mapToObj(Double::toString).collect(Collectors.joining(" ")));
             return true;
         } catch (IOException e) {
             System.err.println("Couldn't print result to file: " + e.getLocalizedMessage());
@@ -51,47 +82,213 @@ public class GradientDescent {
         }
     }
 
-    public static double costFunction(List<Double> weights, List<Point> points) {
+    public static double[] readWeightsFromFile(String filename) throws IOException {
+        String line = new String(Files.readAllBytes(Paths.get(filename)), StandardCharsets.UTF_8).trim();
+        try {
+            return Arrays.stream(line.split("\\s+")).mapToDouble(Double::parseDouble).toArray();
+        } catch (NumberFormatException e) {
+            throw new IOException("Couldn't parse weights file \"" + filename + "\": " + e.getLocalizedMessage());
+        }
+    }
+
+    public static double costFunction(double[] weights, Dataset dataset) {
         double residualSquareSum = 0;
-        for (Point point : points) {
-            double residual = residual(weights, point);
+        for (int i = 0; i < dataset.size(); i++) {
+            double residual = residual(weights, dataset, i);
             residualSquareSum += residual * residual;
         }
 
-        return residualSquareSum / points.size();
+        return residualSquareSum / dataset.size();
     }
 
-    private static double residual(List<Double> weights, Point point) {
-        assert weights.size() == point.coords.size() + 1;
+    public static double costAndGradient(double[] weights, Dataset dataset, double[] gradient) {
+        double residualSquareSum = localSums(weights, dataset, gradient);
+        for (int i = 0; i < gradient.length; i++) {
+            gradient[i] /= dataset.size();
+        }
 
-        double expectedValue = 0;
-        for (int i = 0; i < point.coords.size(); i++) {
-            expectedValue += weights.get(i) * point.coords.get(i);
+        return residualSquareSum / dataset.size();
+    }
+
+    public static double localSums(double[] weights, Dataset dataset, double[] gradient) {
+        assert weights.length == dataset.dimensiality() + 1 && gradient.length == weights.length;
+
+        Arrays.fill(gradient, 0.0);
+        return dataset.accumulate(weights, gradient);
+    }
+
+    public static double costAndGradient(double[] weights, Dataset dataset, int[] rows, int from, int to,
+                                         double[] gradient) {
+        double residualSquareSum = localSums(weights, dataset, rows, from, to, gradient);
+        for (int i = 0; i < gradient.length; i++) {
+            gradient[i] /= to - from;
+        }
+
+        return residualSquareSum / (to - from);
+    }
+
+    public static double localSums(double[] weights, Dataset dataset, int[] rows, int from, int to,
+                                   double[] gradient) {
+        assert weights.length == dataset.dimensiality() + 1 && gradient.length == weights.length;
+
+        Arrays.fill(gradient, 0.0);
+        return dataset.accumulate(weights, gradient, rows, from, to);
+    }
+
+    public static double accumulate(double[] weights, double[] coords, double[] values, int offset,
+                                    int[] rows, int from, int to, double[] gradient) {
+        return KERNEL.accumulate(weights, coords, values, offset, rows, from, to, gradient);
+    }
+
+    public static double accumulate(double[] weights, double[] coords, double[] values, int from, int to,
+                                    double[] gradient) {
+        return KERNEL.accumulate(weights, coords, values, from, to, gradient);
+    }
+
+    public static double accumulate(double[] weights, float[] coords, float[] values, int from, int to,
+                                    double[] gradient) {
+        double residualSquareSum = 0;
+        for (int i = from; i < to; i++) {
+            residualSquareSum += accumulateFloatRow(weights, coords, i * (weights.length - 1), values[i], gradient);
+        }
+        return residualSquareSum;
+    }
+
+    public static double accumulate(double[] weights, float[] coords, float[] values, int offset,
+                                    int[] rows, int from, int to, double[] gradient) {
+        double residualSquareSum = 0;
+        for (int i = from; i < to; i++) {
+            int row = offset + rows[i];
+            residualSquareSum += accumulateFloatRow(weights, coords, row * (weights.length - 1), values[row],
+                    gradient);
         }
-        expectedValue += weights.get(weights.size() - 1);
+        return residualSquareSum;
+    }
+
+    private static double accumulateFloatRow(double[] weights, float[] coords, int position, double value,
+                                             double[] gradient) {
+        int dimensiality = weights.length - 1;
 
-        return expectedValue - point.value;
+        double residual = weights[dimensiality] - value;
+        for (int j = 0; j < dimensiality; j++) {
+            residual += weights[j] * coords[position + j];
+        }
+
+        for (int j = 0; j < dimensiality; j++) {
+            gradient[j] += residual * coords[position + j];
+        }
+        gradient[dimensiality] += residual;
+        return residual * residual;
     }
 
-    public static double dotProduct(List<Double> xs, List<Double> ys) {
-        return zipWith(xs, ys, (x, y) -> x * y).stream().reduce(0.0, Double::sum);
+    public static double accumulate(double[] weights, int[] rowPointers, int[] columns, double[] coords,
+                                    double[] values, int from, int to, double[] gradient) {
+        double residualSquareSum = 0;
+        for (int i = from; i < to; i++) {
+            residualSquareSum += accumulateSparseRow(weights, rowPointers[i], rowPointers[i + 1], columns, coords,
+                    values[i], gradient);
+        }
+        return residualSquareSum;
     }
 
-    private static double distanceSquare(List<Double> xs, List<Double> ys) {
-        return zipWith(xs, ys, (x, y) -> (x - y) * (x - y)).stream().reduce(0.0, Double::sum);
+    public static double accumulate(double[] weights, int[] rowPointers, int[] columns, double[] coords,
+                                    double[] values, int offset, int[] rows, int from, int to, double[] gradient) {
+        double residualSquareSum = 0;
+        for (int i = from; i < to; i++) {
+            int row = offset + rows[i];
+            residualSquareSum += accumulateSparseRow(weights, rowPointers[row], rowPointers[row + 1], columns, coords,
+                    values[row], gradient);
+        }
+        return residualSquareSum;
     }
 
-    private static List<Double> difference(List<Double> xs, List<Double> ys) {
-        return zipWith(xs, ys, (x, y) -> x - y);
+    private static double accumulateSparseRow(double[] weights, int from, int to, int[] columns, double[] coords,
+                                              double value, double[] gradient) {
+        int dimensiality = weights.length - 1;
+
+        double residual = weights[dimensiality] - value;
+        for (int j = from; j < to; j++) {
+            residual += weights[columns[j]] * coords[j];
+        }
+
+        for (int j = from; j < to; j++) {
+            gradient[columns[j]] += residual * coords[j];
+        }
+        gradient[dimensiality] += residual;
+        return residual * residual;
     }
 
-    public static <A, B, R> List<R> zipWith(List<A> x, List<B> y, BiFunction<A, B, R> function) {
-        assert x.size() == y.size();
+    public static double accumulate(double[] weights, DoubleBuffer rows, int from, int to, double[] gradient) {
+        int dimensiality = weights.length - 1;
+
+        double residualSquareSum = 0;
+        for (int i = from; i < to; i++) {
+            int position = i * (dimensiality + 1);
+            double residual = weights[dimensiality];
+            for (int j = 0; j < dimensiality; j++) {
+                residual += weights[j] * rows.get(position + j);
+            }
+            residual -= rows.get(position + dimensiality);
+            residualSquareSum += residual * residual;
 
-        List<R> result = new ArrayList<>(x.size());
-        for (int i = 0; i < x.size(); i++) {
-            result.add(function.apply(x.get(i), y.get(i)));
+            for (int j = 0; j < dimensiality; j++) {
+                gradient[j] += residual * rows.get(position + j);
+            }
+            gradient[dimensiality] += residual;
+        }
+        return residualSquareSum;
+    }
+
+    private static double residual(double[] weights, Dataset dataset, int row) {
+        assert weights.length == dataset.dimensiality() + 1;
+
+        double expectedValue = 0;
+        for (int i = 0; i < dataset.dimensiality(); i++) {
+            expectedValue += weights[i] * dataset.coord(row, i);
+        }
+        expectedValue += weights[weights.length - 1];
+
+        return expectedValue - dataset.value(row);
+    }
+
+    public static double linearValue(double[] weights, double[] coords, int offset) {
+        assert offset + weights.length - 1 <= coords.length;
+
+        return KERNEL.linearValue(weights, coords, offset);
+    }
+
+    public static double dotProduct(double[] xs, double[] ys) {
+        assert xs.length == ys.length;
+
+        double result = 0;
+        for (int i = 0; i < xs.length; i++) {
+            result += xs[i] * ys[i];
         }
         return result;
     }
+
+    private static double distanceSquare(double[] xs, double[] ys) {
+        assert xs.length == ys.length;
+
+        double result = 0;
+        for (int i = 0; i < xs.length; i++) {
+            result += (xs[i] - ys[i]) * (xs[i] - ys[i]);
+        }
+        return result;
+    }
+
+    public static String kernelName() {
+        return KERNEL.getClass().getSimpleName();
+    }
+
+    private static GradientKernel loadKernel() {
+        if (!SCALAR_KERNEL.equals(System.getProperty(KERNEL_PROPERTY))) {
+            try {
+                return Class.forName(VECTOR_KERNEL_CLASS_NAME).asSubclass(GradientKernel.class)
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | ClassCastException | LinkageError ignored) {
+            }
+        }
+        return new ScalarGradientKernel();
+    }
 }
@@ -0,0 +1,10 @@
+package ru.pokrasko.pgd.common;
+
+public interface GradientKernel {
+    double linearValue(double[] weights, double[] coords, int offset);
+
+    double accumulate(double[] weights, double[] coords, double[] values, int from, int to, double[] gradient);
+
+    double accumulate(double[] weights, double[] coords, double[] values, int offset, int[] rows, int from, int to,
+                      double[] gradient);
+}
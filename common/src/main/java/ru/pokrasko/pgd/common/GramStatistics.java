@@ -0,0 +1,220 @@
+package ru.pokrasko.pgd.common;
+
+public class GramStatistics {
+    private static final double MAX_CONDITION_NUMBER = 1e12;
+
+    private final int dimensiality;
+    private final int width;
+
+    private long size;
+    private final double[] means;
+    private final double[] scatter;
+
+    public GramStatistics(int dimensiality) {
+        this.dimensiality = dimensiality;
+        width = dimensiality + 1;
+        if ((long) width * width > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Dimensiality " + dimensiality
+                    + " is too high for the Gram statistics");
+        }
+        means = new double[width];
+        scatter = new double[width * width];
+    }
+
+    public GramStatistics(int dimensiality, long size, double[] means, double[] scatter) {
+        this.dimensiality = dimensiality;
+        width = dimensiality + 1;
+        assert means.length == width && scatter.length == width * width;
+        this.size = size;
+        this.means = means;
+        this.scatter = scatter;
+    }
+
+    public void add(Dataset dataset) {
+        assert dataset.dimensiality() == dimensiality;
+
+        int addedSize = dataset.size();
+        if (addedSize == 0) {
+            return;
+        }
+
+        double[] shift = new double[width];
+        boolean[] shifted = new boolean[1];
+        double[] sums = new double[width];
+        double[] products = new double[width * width];
+        double[] deviations = new double[width];
+        dataset.forEach((coords, offset, value) -> {
+            if (!shifted[0]) {
+                System.arraycopy(coords, offset, shift, 0, dimensiality);
+                shift[dimensiality] = value;
+                shifted[0] = true;
+            }
+            for (int i = 0; i < dimensiality; i++) {
+                deviations[i] = coords[offset + i] - shift[i];
+            }
+            deviations[dimensiality] = value - shift[dimensiality];
+            for (int i = 0; i < width; i++) {
+                double deviation = deviations[i];
+                sums[i] += deviation;
+                int row = i * width;
+                for (int j = i; j < width; j++) {
+                    products[row + j] += deviation * deviations[j];
+                }
+            }
+        });
+
+        double[] addedMeans = new double[width];
+        for (int i = 0; i < width; i++) {
+            addedMeans[i] = shift[i] + sums[i] / addedSize;
+        }
+        for (int i = 0; i < width; i++) {
+            for (int j = i; j < width; j++) {
+                products[i * width + j] -= sums[i] * sums[j] / addedSize;
+            }
+        }
+        merge(addedSize, addedMeans, products);
+    }
+
+    public void merge(GramStatistics other) {
+        assert other.dimensiality == dimensiality;
+        if (other.size > 0) {
+            merge(other.size, other.means, other.scatter);
+        }
+    }
+
+    private void merge(long addedSize, double[] addedMeans, double[] addedScatter) {
+        long newSize = size + addedSize;
+        double factor = (double) size * addedSize / newSize;
+        for (int i = 0; i < width; i++) {
+            for (int j = i; j < width; j++) {
+                scatter[i * width + j] += addedScatter[i * width + j]
+                        + factor * (addedMeans[i] - means[i]) * (addedMeans[j] - means[j]);
+                scatter[j * width + i] = scatter[i * width + j];
+            }
+        }
+        for (int i = 0; i < width; i++) {
+            means[i] += (addedMeans[i] - means[i]) * addedSize / newSize;
+        }
+        size = newSize;
+    }
+
+    public double[] solve() {
+        if (size == 0) {
+            return null;
+        }
+
+        double[] factor = new double[dimensiality * dimensiality];
+        double minPivot = Double.POSITIVE_INFINITY;
+        double maxPivot = 0.0;
+        for (int j = 0; j < dimensiality; j++) {
+            double pivot = scatter[j * width + j];
+            for (int k = 0; k < j; k++) {
+                pivot -= factor[j * dimensiality + k] * factor[j * dimensiality + k];
+            }
+            if (!(pivot > 0.0)) {
+                return null;
+            }
+            pivot = Math.sqrt(pivot);
+            factor[j * dimensiality + j] = pivot;
+            minPivot = Math.min(minPivot, pivot);
+            maxPivot = Math.max(maxPivot, pivot);
+
+            for (int i = j + 1; i < dimensiality; i++) {
+                double sum = scatter[i * width + j];
+                for (int k = 0; k < j; k++) {
+                    sum -= factor[i * dimensiality + k] * factor[j * dimensiality + k];
+                }
+                factor[i * dimensiality + j] = sum / pivot;
+            }
+        }
+        if (dimensiality > 0 && minPivot * minPivot * MAX_CONDITION_NUMBER < maxPivot * maxPivot) {
+            return null;
+        }
+
+        double[] weights = new double[width];
+        for (int i = 0; i < dimensiality; i++) {
+            double sum = scatter[i * width + dimensiality];
+            for (int k = 0; k < i; k++) {
+                sum -= factor[i * dimensiality + k] * weights[k];
+            }
+            weights[i] = sum / factor[i * dimensiality + i];
+        }
+        for (int i = dimensiality - 1; i >= 0; i--) {
+            double sum = weights[i];
+            for (int k = i + 1; k < dimensiality; k++) {
+                sum -= factor[k * dimensiality + i] * weights[k];
+            }
+            weights[i] = sum / factor[i * dimensiality + i];
+        }
+
+        double intercept = means[dimensiality];
+        for (int i = 0; i < dimensiality; i++) {
+            intercept -= weights[i] * means[i];
+        }
+        weights[dimensiality] = intercept;
+        return weights;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public int dimensiality() {
+        return dimensiality;
+    }
+
+    public double[] means() {
+        return means;
+    }
+
+    public double[] scatter() {
+        return scatter;
+    }
+
+    public double costAndGradient(double[] weights, double[] gradient) {
+        assert weights.length == width && gradient.length == width;
+
+        double meanResidual = weights[dimensiality] - means[dimensiality];
+        for (int i = 0; i < dimensiality; i++) {
+            meanResidual += weights[i] * means[i];
+        }
+
+        double residualSquareSum = scatter[dimensiality * width + dimensiality];
+        for (int i = 0; i < dimensiality; i++) {
+            double scatterProduct = -scatter[i * width + dimensiality];
+            for (int j = 0; j < dimensiality; j++) {
+                scatterProduct += scatter[i * width + j] * weights[j];
+            }
+            residualSquareSum += weights[i] * (scatterProduct - scatter[i * width + dimensiality]);
+            gradient[i] = scatterProduct / size + means[i] * meanResidual;
+        }
+        gradient[dimensiality] = meanResidual;
+
+        return residualSquareSum / size + meanResidual * meanResidual;
+    }
+
+    public double[] directionalSums(double[] weights, double[] direction) {
+        assert weights.length == width && direction.length == width;
+
+        double meanResidual = weights[dimensiality] - means[dimensiality];
+        double meanDirectional = direction[dimensiality];
+        for (int i = 0; i < dimensiality; i++) {
+            meanResidual += weights[i] * means[i];
+            meanDirectional += direction[i] * means[i];
+        }
+
+        double residualProduct = size * meanResidual * meanDirectional;
+        double directionalSquareSum = size * meanDirectional * meanDirectional;
+        for (int i = 0; i < dimensiality; i++) {
+            double scatterProduct = -scatter[i * width + dimensiality];
+            double directionalProduct = 0;
+            for (int j = 0; j < dimensiality; j++) {
+                scatterProduct += scatter[i * width + j] * weights[j];
+                directionalProduct += scatter[i * width + j] * direction[j];
+            }
+            residualProduct += direction[i] * scatterProduct;
+            directionalSquareSum += direction[i] * directionalProduct;
+        }
+        return new double[] {residualProduct, directionalSquareSum};
+    }
+}
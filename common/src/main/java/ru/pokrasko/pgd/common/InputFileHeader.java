@@ -0,0 +1,95 @@
+package ru.pokrasko.pgd.common;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public class InputFileHeader {
+    public static final int DENSE_FORMAT = 0;
+    public static final int SPARSE_FORMAT = 1;
+    public static final int FLOAT_FORMAT = 2;
+
+    private static final int EXTENDED_MARKER = -0x50474446;
+    private static final int DENSE_BYTES = 2 * Integer.BYTES;
+    private static final int EXTENDED_BYTES = 4 * Integer.BYTES + Long.BYTES;
+
+    private final int format;
+    private final int size;
+    private final int dimensiality;
+    private final long nonZerosNumber;
+
+    public InputFileHeader(int format, int size, int dimensiality, long nonZerosNumber) {
+        this.format = format;
+        this.size = size;
+        this.dimensiality = dimensiality;
+        this.nonZerosNumber = nonZerosNumber;
+    }
+
+    public static InputFileHeader read(DataInput input) throws IOException {
+        int first = input.readInt();
+        if (first != EXTENDED_MARKER) {
+            if (first < 0) {
+                throw new IOException("Unknown input file format");
+            }
+            return new InputFileHeader(DENSE_FORMAT, first, input.readInt(), -1);
+        }
+
+        int format = input.readInt();
+        if (format != SPARSE_FORMAT && format != FLOAT_FORMAT) {
+            throw new IOException("Unknown input file format " + format);
+        }
+        int size = input.readInt();
+        int dimensiality = input.readInt();
+        long nonZerosNumber = input.readLong();
+        if (size < 0 || dimensiality < 0
+                || format == SPARSE_FORMAT && (nonZerosNumber < 0 || nonZerosNumber > Integer.MAX_VALUE)) {
+            throw new IOException("Illegal input file header");
+        }
+        return new InputFileHeader(format, size, dimensiality, nonZerosNumber);
+    }
+
+    public ByteBuffer toBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocate(bytes());
+        if (format == DENSE_FORMAT) {
+            buffer.putInt(size).putInt(dimensiality);
+        } else {
+            buffer.putInt(EXTENDED_MARKER).putInt(format).putInt(size).putInt(dimensiality).putLong(nonZerosNumber);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    public int bytes() {
+        return format == DENSE_FORMAT ? DENSE_BYTES : EXTENDED_BYTES;
+    }
+
+    public long rowBytes() {
+        assert format != SPARSE_FORMAT;
+
+        return (long) (dimensiality + 1) * (format == FLOAT_FORMAT ? Float.BYTES : Double.BYTES);
+    }
+
+    public int format() {
+        return format;
+    }
+
+    public boolean isSparse() {
+        return format == SPARSE_FORMAT;
+    }
+
+    public boolean isFloat() {
+        return format == FLOAT_FORMAT;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int dimensiality() {
+        return dimensiality;
+    }
+
+    public long nonZerosNumber() {
+        return nonZerosNumber;
+    }
+}
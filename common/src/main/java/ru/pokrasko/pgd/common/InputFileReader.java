@@ -2,38 +2,162 @@ package ru.pokrasko.pgd.common;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class InputFileReader {
+    private static final int SPARSE_ENTRY_BYTES = Integer.BYTES + Double.BYTES;
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
     private String inputFilename;
-    private List<Point> points;
+    private Dataset dataset;
+    private InputFileHeader header;
+
+    private int size = -1;
+    private int dimensiality = -1;
 
     public InputFileReader(String inputFilename) throws FileNotFoundException {
         this.inputFilename = inputFilename;
     }
 
-    public List<Point> getPoints() throws IOException {
-        if (points == null) {
-            parsePoints();
+    public Dataset getDataset() throws IOException {
+        if (dataset == null) {
+            parseDataset();
+        }
+        return dataset;
+    }
+
+    public Dataset getDataset(int threadsNumber) throws IOException {
+        if (dataset == null) {
+            if (threadsNumber > 1 && !isSparse()) {
+                parseDatasetInParallel(threadsNumber);
+            } else {
+                parseDataset();
+            }
+        }
+        return dataset;
+    }
+
+    public Dataset getDataset(int from, int to) throws IOException {
+        if (dataset != null) {
+            return dataset.subset(from, to);
+        }
+        if (from < 0 || from > to || to > getAvailableSize()) {
+            throw new IllegalArgumentException("Illegal point range [" + from + ", " + to + ")");
+        }
+
+        try (FileInputStream fileStream = new FileInputStream(inputFilename);
+             DataInputStream stream = new DataInputStream(new BufferedInputStream(fileStream))) {
+            long startTime = System.currentTimeMillis();
+
+            Dataset range;
+            if (header.isSparse()) {
+                fileStream.getChannel().position(header.bytes());
+                for (int i = 0; i < from; i++) {
+                    int nonZerosNumber = stream.readInt();
+                    if (nonZerosNumber < 0 || nonZerosNumber > dimensiality) {
+                        throw new IOException("Illegal number of non-zero coordinates in point " + i);
+                    }
+                    skipFully(stream, (long) nonZerosNumber * SPARSE_ENTRY_BYTES + Double.BYTES);
+                }
+                range = readSparsePoints(stream, to - from, dimensiality, 0);
+            } else {
+                fileStream.getChannel().position(header.bytes() + from * header.rowBytes());
+                range = header.isFloat()
+                        ? readFloatPoints(stream, to - from, dimensiality)
+                        : readPoints(stream, to - from, dimensiality);
+            }
+
+            System.out.printf("Input parsing of points [%d, %d) finished (%d ms)\n", from, to,
+                    System.currentTimeMillis() - startTime);
+            return range;
+        }
+    }
+
+    public int getSize() throws IOException {
+        if (size == -1) {
+            parseHeader();
+        }
+        return size;
+    }
+
+    public int getAvailableSize() throws IOException {
+        if (header == null) {
+            parseHeader();
+        }
+        if (header.isSparse()) {
+            return size;
         }
-        return points;
+        return (int) Math.min((new File(inputFilename).length() - header.bytes()) / header.rowBytes(),
+                Integer.MAX_VALUE);
     }
 
-    private void parsePoints() throws IOException {
+    public void checkLength() throws IOException {
+        if (header == null) {
+            parseHeader();
+        }
+        if (!header.isSparse() && new File(inputFilename).length() != header.bytes() + size * header.rowBytes()) {
+            throw new IOException("The input file length doesn't match its header");
+        }
+    }
+
+    public boolean isSparse() throws IOException {
+        if (header == null) {
+            parseHeader();
+        }
+        return header.isSparse();
+    }
+
+    public boolean isFloat() throws IOException {
+        if (header == null) {
+            parseHeader();
+        }
+        return header.isFloat();
+    }
+
+    public int getDimensiality() throws IOException {
+        if (dimensiality == -1) {
+            parseHeader();
+        }
+        return dimensiality;
+    }
+
+    public static int loadingThreads(Integer threadsNumber) {
+        if (threadsNumber == null) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        if (threadsNumber <= 0) {
+            throw new IllegalArgumentException("The loading threads number should be positive");
+        }
+        return threadsNumber;
+    }
+
+    private void parseHeader() throws IOException {
+        try (DataInputStream stream = new DataInputStream(new FileInputStream(inputFilename))) {
+            header = InputFileHeader.read(stream);
+            size = header.size();
+            dimensiality = header.dimensiality();
+        }
+    }
+
+    private void parseDataset() throws IOException {
         try (DataInputStream stream =
                      new DataInputStream(new BufferedInputStream(new FileInputStream(inputFilename)))) {
             long startTime = System.currentTimeMillis();
 
-            int size = stream.readInt();
-            int dimensiality = stream.readInt();
-
-            points = new ArrayList<>(size);
-            for (int i = 0; i < size; i++) {
-                List<Double> coords = new ArrayList<>(dimensiality);
-                for (int j = 0; j < dimensiality; j++) {
-                    coords.add(stream.readDouble());
-                }
-                points.add(new Point(coords, stream.readDouble()));
+            header = InputFileHeader.read(stream);
+            size = header.size();
+            dimensiality = header.dimensiality();
+            if (header.isSparse()) {
+                dataset = readSparsePoints(stream, size, dimensiality, (int) header.nonZerosNumber());
+            } else if (header.isFloat()) {
+                dataset = readFloatPoints(stream, size, dimensiality);
+            } else {
+                dataset = readPoints(stream, size, dimensiality);
             }
 
             try {
@@ -44,4 +168,147 @@ public class InputFileReader {
             }
         }
     }
+
+    private void parseDatasetInParallel(int threadsNumber) throws IOException {
+        long startTime = System.currentTimeMillis();
+
+        checkLength();
+        int coordsNumber = coordsNumber(size, dimensiality);
+        double[] coords = header.isFloat() ? null : new double[coordsNumber];
+        double[] values = header.isFloat() ? null : new double[size];
+        float[] floatCoords = header.isFloat() ? new float[coordsNumber] : null;
+        float[] floatValues = header.isFloat() ? new float[size] : null;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadsNumber);
+        try {
+            List<Future<?>> ranges = new ArrayList<>();
+            for (int i = 0; i < threadsNumber; i++) {
+                int from = (int) ((long) i * size / threadsNumber);
+                int to = (int) ((long) (i + 1) * size / threadsNumber);
+                ranges.add(executor.submit(() -> {
+                    try (FileInputStream fileStream = new FileInputStream(inputFilename);
+                         DataInputStream stream = new DataInputStream(new BufferedInputStream(fileStream))) {
+                        fileStream.getChannel().position(header.bytes() + from * header.rowBytes());
+                        if (header.isFloat()) {
+                            readFloatPoints(stream, dimensiality, floatCoords, floatValues, from, to);
+                        } else {
+                            readPoints(stream, dimensiality, coords, values, from, to);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> range : ranges) {
+                range.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Input parsing was interrupted");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException
+                    ? (IOException) e.getCause()
+                    : new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        dataset = header.isFloat()
+                ? new FloatDataset(dimensiality, floatCoords, floatValues)
+                : new DenseDataset(dimensiality, coords, values);
+        System.out.printf("Input parsing finished with %d threads (%d ms)\n", threadsNumber,
+                System.currentTimeMillis() - startTime);
+    }
+
+    private static Dataset readPoints(DataInputStream stream, int size, int dimensiality) throws IOException {
+        double[] coords = new double[coordsNumber(size, dimensiality)];
+        double[] values = new double[size];
+        readPoints(stream, dimensiality, coords, values, 0, size);
+        return new DenseDataset(dimensiality, coords, values);
+    }
+
+    private static void readPoints(DataInputStream stream, int dimensiality, double[] coords, double[] values,
+                                   int from, int to) throws IOException {
+        for (int i = from; i < to; i++) {
+            for (int j = 0; j < dimensiality; j++) {
+                coords[i * dimensiality + j] = stream.readDouble();
+            }
+            values[i] = stream.readDouble();
+        }
+    }
+
+    private static Dataset readFloatPoints(DataInputStream stream, int size, int dimensiality) throws IOException {
+        float[] coords = new float[coordsNumber(size, dimensiality)];
+        float[] values = new float[size];
+        readFloatPoints(stream, dimensiality, coords, values, 0, size);
+        return new FloatDataset(dimensiality, coords, values);
+    }
+
+    private static void readFloatPoints(DataInputStream stream, int dimensiality, float[] coords, float[] values,
+                                        int from, int to) throws IOException {
+        for (int i = from; i < to; i++) {
+            for (int j = 0; j < dimensiality; j++) {
+                coords[i * dimensiality + j] = stream.readFloat();
+            }
+            values[i] = stream.readFloat();
+        }
+    }
+
+    private static void skipFully(DataInputStream stream, long bytes) throws IOException {
+        while (bytes > 0) {
+            int skipped = stream.skipBytes((int) Math.min(bytes, Integer.MAX_VALUE));
+            if (skipped == 0) {
+                stream.readByte();
+                skipped = 1;
+            }
+            bytes -= skipped;
+        }
+    }
+
+    private static int coordsNumber(int size, int dimensiality) throws IOException {
+        long coordsNumber = (long) size * dimensiality;
+        if (coordsNumber > MAX_ARRAY_LENGTH) {
+            throw new IOException(String.format("%d points of dimensiality %d are too many to be loaded into memory, "
+                    + "use mapped or streaming input", size, dimensiality));
+        }
+        return (int) coordsNumber;
+    }
+
+    private static Dataset readSparsePoints(DataInputStream stream, int size, int dimensiality, int capacity)
+            throws IOException {
+        int[] rowPointers = new int[size + 1];
+        int[] columns = new int[capacity];
+        double[] coords = new double[capacity];
+        double[] values = new double[size];
+        int position = 0;
+        for (int i = 0; i < size; i++) {
+            int nonZerosNumber = stream.readInt();
+            if (nonZerosNumber < 0 || nonZerosNumber > dimensiality) {
+                throw new IOException("Illegal number of non-zero coordinates in point " + i);
+            }
+            if (position + nonZerosNumber > columns.length) {
+                int newCapacity = (int) Math.min(Math.max((long) columns.length * 2, position + nonZerosNumber),
+                        Integer.MAX_VALUE);
+                columns = Arrays.copyOf(columns, newCapacity);
+                coords = Arrays.copyOf(coords, newCapacity);
+            }
+
+            int previousColumn = -1;
+            for (int j = 0; j < nonZerosNumber; j++) {
+                int column = stream.readInt();
+                if (column <= previousColumn || column >= dimensiality) {
+                    throw new IOException("Illegal coordinate index " + column + " in point " + i);
+                }
+                columns[position] = column;
+                coords[position++] = stream.readDouble();
+                previousColumn = column;
+            }
+            values[i] = stream.readDouble();
+            rowPointers[i + 1] = position;
+        }
+        if (position < columns.length) {
+            columns = Arrays.copyOf(columns, position);
+            coords = Arrays.copyOf(coords, position);
+        }
+        return new SparseDataset(dimensiality, rowPointers, columns, coords, values);
+    }
 }
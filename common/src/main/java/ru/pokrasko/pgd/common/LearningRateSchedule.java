@@ -0,0 +1,47 @@
+package ru.pokrasko.pgd.common;
+
+import java.util.Locale;
+
+public class LearningRateSchedule {
+    public enum Type {
+        CONSTANT, INVERSE, EXPONENTIAL
+    }
+
+    private final Type type;
+    private final double learningRate;
+    private final double decay;
+
+    public LearningRateSchedule(Type type, double learningRate, double decay) {
+        if (learningRate <= 0) {
+            throw new IllegalArgumentException("The learning rate should be positive");
+        }
+        if (decay < 0 || type == Type.EXPONENTIAL && decay > 1) {
+            throw new IllegalArgumentException("Illegal learning rate decay " + decay + " for " + type + " schedule");
+        }
+
+        this.type = type;
+        this.learningRate = learningRate;
+        this.decay = decay;
+    }
+
+    public static LearningRateSchedule parse(String type, double learningRate, double decay) {
+        Type parsedType;
+        try {
+            parsedType = Type.valueOf(type.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown learning rate schedule \"" + type + "\"");
+        }
+        return new LearningRateSchedule(parsedType, learningRate, decay);
+    }
+
+    public double learningRate(int epoch) {
+        switch (type) {
+            case INVERSE:
+                return learningRate / (1 + decay * epoch);
+            case EXPONENTIAL:
+                return learningRate * Math.pow(decay, epoch);
+            default:
+                return learningRate;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package ru.pokrasko.pgd.common;
+
+import java.nio.DoubleBuffer;
+
+public class MappedDataset implements Dataset {
+    private final DoubleBuffer[] segments;
+    private final int segmentRows;
+    private final int offset;
+    private final int size;
+    private final int dimensiality;
+
+    MappedDataset(int dimensiality, DoubleBuffer[] segments, int segmentRows, int offset, int size) {
+        this.segments = segments;
+        this.segmentRows = segmentRows;
+        this.offset = offset;
+        this.size = size;
+        this.dimensiality = dimensiality;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int dimensiality() {
+        return dimensiality;
+    }
+
+    @Override
+    public double coord(int row, int index) {
+        assert row >= 0 && row < size && index >= 0 && index < dimensiality;
+
+        int globalRow = offset + row;
+        return segments[globalRow / segmentRows].get((globalRow % segmentRows) * (dimensiality + 1) + index);
+    }
+
+    @Override
+    public double value(int row) {
+        assert row >= 0 && row < size;
+
+        int globalRow = offset + row;
+        return segments[globalRow / segmentRows].get((globalRow % segmentRows) * (dimensiality + 1) + dimensiality);
+    }
+
+    @Override
+    public MappedDataset subset(int from, int to) {
+        assert from >= 0 && from <= to && to <= size;
+
+        return new MappedDataset(dimensiality, segments, segmentRows, offset + from, to - from);
+    }
+
+    @Override
+    public double accumulate(double[] weights, double[] gradient) {
+        double residualSquareSum = 0;
+        for (int row = offset; row < offset + size; ) {
+            int segment = row / segmentRows;
+            int to = Math.min(offset + size, (segment + 1) * segmentRows);
+            residualSquareSum += GradientDescent.accumulate(weights, segments[segment],
+                    row - segment * segmentRows, to - segment * segmentRows, gradient);
+            row = to;
+        }
+        return residualSquareSum;
+    }
+
+    @Override
+    public double accumulate(double[] weights, double[] gradient, int[] rows, int from, int to) {
+        double residualSquareSum = 0;
+        for (int i = from; i < to; i++) {
+            int row = offset + rows[i];
+            int segment = row / segmentRows;
+            residualSquareSum += GradientDescent.accumulate(weights, segments[segment],
+                    row - segment * segmentRows, row - segment * segmentRows + 1, gradient);
+        }
+        return residualSquareSum;
+    }
+
+    @Override
+    public void forEach(RowVisitor visitor) {
+        double[] coords = new double[dimensiality];
+        for (int row = offset; row < offset + size; ) {
+            int segment = row / segmentRows;
+            int to = Math.min(offset + size, (segment + 1) * segmentRows);
+            visitRows(segments[segment], row - segment * segmentRows, to - segment * segmentRows, coords, visitor);
+            row = to;
+        }
+    }
+
+    static void visitRows(DoubleBuffer rows, int from, int to, double[] coords, RowVisitor visitor) {
+        int dimensiality = coords.length;
+        for (int i = from; i < to; i++) {
+            int position = i * (dimensiality + 1);
+            for (int j = 0; j < dimensiality; j++) {
+                coords[j] = rows.get(position + j);
+            }
+            visitor.visit(coords, 0, rows.get(position + dimensiality));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ru.pokrasko.pgd.common;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+
+public class MappedInputFileReader {
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final long MAX_SEGMENT_BYTES = Integer.MAX_VALUE;
+
+    private String inputFilename;
+    private Dataset dataset;
+
+    public MappedInputFileReader(String inputFilename) {
+        this.inputFilename = inputFilename;
+    }
+
+    public Dataset getDataset() throws IOException {
+        if (dataset == null) {
+            mapDataset();
+        }
+        return dataset;
+    }
+
+    private void mapDataset() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(inputFilename, "r");
+             FileChannel channel = file.getChannel()) {
+            long startTime = System.currentTimeMillis();
+
+            InputFileHeader header = InputFileHeader.read(file);
+            if (header.format() != InputFileHeader.DENSE_FORMAT) {
+                throw new IOException("Memory-mapped input supports only dense double precision input files");
+            }
+            int size = header.size();
+            int dimensiality = header.dimensiality();
+
+            long rowBytes = (long) (dimensiality + 1) * Double.BYTES;
+            if (rowBytes > MAX_SEGMENT_BYTES) {
+                throw new IOException("Points of dimensiality " + dimensiality + " are too large to be mapped");
+            }
+            if (channel.size() != HEADER_BYTES + size * rowBytes) {
+                throw new IOException("Input file size doesn't match its header");
+            }
+
+            int segmentRows = (int) Math.min(MAX_SEGMENT_BYTES / rowBytes, Math.max(size, 1));
+            DoubleBuffer[] segments = new DoubleBuffer[(size + segmentRows - 1) / segmentRows];
+            for (int i = 0; i < segments.length; i++) {
+                long rows = Math.min(segmentRows, size - (long) i * segmentRows);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_BYTES + (long) i * segmentRows * rowBytes, rows * rowBytes).asDoubleBuffer();
+            }
+            dataset = new MappedDataset(dimensiality, segments, segmentRows, 0, size);
+
+            System.out.printf("Input mapping finished (%d ms)\n", System.currentTimeMillis() - startTime);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ru.pokrasko.pgd.common;
+
+import java.util.Random;
+
+public class MiniBatchSampler {
+    private final int[] rows;
+    private final int batchSize;
+    private final Random random;
+
+    private int from;
+    private int to;
+    private int epoch;
+
+    public MiniBatchSampler(int size, int batchSize, long seed) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("The batch size should be positive");
+        }
+
+        rows = new int[size];
+        for (int i = 0; i < size; i++) {
+            rows[i] = i;
+        }
+        this.batchSize = batchSize;
+        random = new Random(seed);
+
+        shuffle();
+        to = Math.min(batchSize, size);
+    }
+
+    public int[] rows() {
+        return rows;
+    }
+
+    public int from() {
+        return from;
+    }
+
+    public int to() {
+        return to;
+    }
+
+    public int epoch() {
+        return epoch;
+    }
+
+    public boolean next() {
+        from = to;
+        boolean epochFinished = from >= rows.length;
+        if (epochFinished) {
+            shuffle();
+            from = 0;
+            epoch++;
+        }
+        to = Math.min(from + batchSize, rows.length);
+        return !epochFinished;
+    }
+
+    private void shuffle() {
+        for (int i = rows.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int row = rows[i];
+            rows[i] = rows[j];
+            rows[j] = row;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package ru.pokrasko.pgd.common;
+
+import java.util.function.DoubleUnaryOperator;
+
+class NesterovPolicy extends StepPolicy {
+    private final double learningRate;
+    private final double momentum;
+
+    private double[] descendedWeights;
+
+    NesterovPolicy(double learningRate, double momentum) {
+        this.learningRate = learningRate;
+        this.momentum = momentum;
+    }
+
+    @Override
+    public Type type() {
+        return Type.NESTEROV;
+    }
+
+    @Override
+    public double update(double[] weights, double costFunction, double[] gradient, DoubleUnaryOperator lineCost,
+                         double[] newWeights) {
+        if (descendedWeights == null) {
+            descendedWeights = weights.clone();
+        }
+
+        for (int i = 0; i < weights.length; i++) {
+            double descended = weights[i] - learningRate * gradient[i];
+            newWeights[i] = descended + momentum * (descended - descendedWeights[i]);
+            descendedWeights[i] = descended;
+        }
+        return learningRate;
+    }
+
+    @Override
+    public double[][] state() {
+        return descendedWeights != null ? new double[][] {descendedWeights} : new double[0][];
+    }
+
+    @Override
+    public void restore(double[][] state) {
+        if (state.length == 1) {
+            descendedWeights = state[0];
+        }
+    }
+}
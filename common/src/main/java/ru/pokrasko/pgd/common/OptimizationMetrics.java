@@ -0,0 +1,141 @@
+package ru.pokrasko.pgd.common;
+
+import com.codahale.metrics.ConsoleReporter;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class OptimizationMetrics implements Closeable {
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN = threadBean();
+
+    private final MetricRegistry registry = new MetricRegistry();
+    private final Timer iterationTimes = registry.timer("iteration.time");
+    private final Meter allocations = registry.meter("iteration.allocated-bytes");
+    private final Map<Integer, Timer> slaveComputeTimes = new HashMap<>();
+    private final Map<Integer, Timer> slaveLatencies = new HashMap<>();
+
+    private final BufferedWriter trace;
+
+    private double costFunction = Double.NaN;
+    private double gradientStep = Double.NaN;
+    private long iterationStartTime;
+    private long allocatedBytes;
+
+    public OptimizationMetrics(String traceFilename) throws IOException {
+        registry.register("iteration.cost", (Gauge<Double>) () -> costFunction);
+        registry.register("iteration.step", (Gauge<Double>) () -> gradientStep);
+        trace = traceFilename != null
+                ? Files.newBufferedWriter(Paths.get(traceFilename), StandardCharsets.UTF_8)
+                : null;
+        start();
+    }
+
+    public void start() {
+        iterationStartTime = System.nanoTime();
+        allocatedBytes = currentAllocatedBytes();
+    }
+
+    public void iterationFinished(int iteration, double costFunction, double gradientStep) {
+        long time = System.nanoTime() - iterationStartTime;
+        long allocated = currentAllocatedBytes() - allocatedBytes;
+
+        this.costFunction = costFunction;
+        this.gradientStep = gradientStep;
+        iterationTimes.update(time, TimeUnit.NANOSECONDS);
+        if (allocated > 0) {
+            allocations.mark(allocated);
+        }
+        writeTrace(String.format(Locale.ROOT,
+                "{\"iteration\":%d,\"time\":%.3f,\"cost\":%s,\"step\":%s,\"allocatedBytes\":%d}",
+                iteration, time / 1e6, number(costFunction), number(gradientStep), allocated));
+        start();
+    }
+
+    public void slaveReported(int iteration, int slaveId, int pointsNumber, long computeTime, long latency) {
+        slaveComputeTimes.computeIfAbsent(slaveId, id -> registry.timer("slave." + id + ".compute-time"))
+                .update(computeTime, TimeUnit.NANOSECONDS);
+        if (latency >= 0) {
+            slaveLatencies.computeIfAbsent(slaveId, id -> registry.timer("slave." + id + ".latency"))
+                    .update(latency, TimeUnit.NANOSECONDS);
+        }
+        writeTrace(String.format(Locale.ROOT,
+                "{\"iteration\":%d,\"slave\":%d,\"points\":%d,\"computeTime\":%.3f,\"latency\":%s}",
+                iteration, slaveId, pointsNumber, computeTime / 1e6,
+                latency >= 0 ? String.format(Locale.ROOT, "%.3f", latency / 1e6) : "null"));
+    }
+
+    public Counter bytesWritten() {
+        return registry.counter("eventbus.bytes-written");
+    }
+
+    public Counter bytesRead() {
+        return registry.counter("eventbus.bytes-read");
+    }
+
+    public void report(PrintStream output) {
+        ConsoleReporter.forRegistry(registry)
+                .outputTo(output)
+                .convertDurationsTo(TimeUnit.MILLISECONDS)
+                .convertRatesTo(TimeUnit.SECONDS)
+                .build()
+                .report();
+    }
+
+    public void flush() throws IOException {
+        if (trace != null) {
+            trace.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (trace != null) {
+            trace.close();
+        }
+    }
+
+    private void writeTrace(String line) {
+        if (trace == null) {
+            return;
+        }
+        try {
+            trace.write(line);
+            trace.newLine();
+        } catch (IOException e) {
+            System.err.println("Couldn't write the trace: " + e.getLocalizedMessage());
+        }
+    }
+
+    private static String number(double value) {
+        return Double.isFinite(value) ? Double.toString(value) : "null";
+    }
+
+    private static long currentAllocatedBytes() {
+        return THREAD_BEAN != null ? THREAD_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            ((com.sun.management.ThreadMXBean) bean).setThreadAllocatedMemoryEnabled(true);
+            return (com.sun.management.ThreadMXBean) bean;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,211 @@
+package ru.pokrasko.pgd.common;
+
+import io.vertx.core.json.JsonObject;
+
+import java.io.IOException;
+
+public class OptimizerOptions {
+    public static final String INPUT_CONFIG_KEY = "input";
+    public static final String OUTPUT_CONFIG_KEY = "output";
+    public static final String CONVERGENCE_CONFIG_KEY = "convergence";
+    public static final String MAPPED_CONFIG_KEY = "mapped";
+    public static final String STREAMING_CONFIG_KEY = "streaming";
+    public static final String CHUNK_SIZE_CONFIG_KEY = "chunkSize";
+    public static final String LOADING_THREADS_CONFIG_KEY = "loadingThreads";
+    public static final String BATCH_SIZE_CONFIG_KEY = "batchSize";
+    public static final String LEARNING_RATE_CONFIG_KEY = "learningRate";
+    public static final String SCHEDULE_CONFIG_KEY = "schedule";
+    public static final String DECAY_CONFIG_KEY = "decay";
+    public static final String MAX_EPOCHS_CONFIG_KEY = "maxEpochs";
+    public static final String MAX_ITERATIONS_CONFIG_KEY = "maxIterations";
+    public static final String SEED_CONFIG_KEY = "seed";
+    public static final String STEP_POLICY_CONFIG_KEY = "stepPolicy";
+    public static final String MOMENTUM_CONFIG_KEY = "momentum";
+    public static final String CHECKPOINT_CONFIG_KEY = "checkpoint";
+    public static final String CHECKPOINT_INTERVAL_CONFIG_KEY = "checkpointInterval";
+    public static final String RESUME_CONFIG_KEY = "resume";
+    public static final String INITIAL_WEIGHTS_CONFIG_KEY = "initialWeights";
+    public static final String SOLVER_CONFIG_KEY = "solver";
+    public static final String METRICS_CONFIG_KEY = "metrics";
+    public static final String TRACE_CONFIG_KEY = "trace";
+
+    public static final String DESCENT_SOLVER = "descent";
+    public static final String NORMAL_SOLVER = "normal";
+    public static final int MAX_NORMAL_DIMENSIALITY = 1000;
+
+    private static final double DEFAULT_LEARNING_RATE = 0.01;
+    private static final double DEFAULT_MOMENTUM = 0.9;
+    private static final String DEFAULT_SCHEDULE = "constant";
+    private static final int DEFAULT_CHUNK_SIZE = 65536;
+    private static final int DEFAULT_CHECKPOINT_INTERVAL = 10;
+
+    private final JsonObject config;
+    private final String inputFilename;
+    private final String outputFilename;
+    private final double convergence;
+    private final Integer batchSize;
+    private final LearningRateSchedule schedule;
+    private final int maxEpochs;
+    private final int maxIterations;
+    private final long seed;
+    private final String checkpointFilename;
+    private final int checkpointInterval;
+    private final boolean normal;
+
+    public OptimizerOptions(JsonObject config) {
+        this.config = config;
+
+        inputFilename = config.getString(INPUT_CONFIG_KEY);
+        if (inputFilename == null) {
+            throw new IllegalArgumentException("You should specify input file name in the configuration file");
+        }
+        outputFilename = config.getString(OUTPUT_CONFIG_KEY);
+        Double convergence = config.getDouble(CONVERGENCE_CONFIG_KEY);
+        if (convergence == null) {
+            throw new IllegalArgumentException("You should specify convergence value in the configuration file");
+        }
+        this.convergence = convergence;
+        loadingThreads(config);
+
+        batchSize = config.getInteger(BATCH_SIZE_CONFIG_KEY);
+        if (batchSize != null) {
+            if (batchSize <= 0) {
+                throw new IllegalArgumentException("The batch size should be positive");
+            }
+            if (isStreaming()) {
+                throw new IllegalArgumentException("Mini-batch gradient descent can't be used with streaming input");
+            }
+            if (config.containsKey(STEP_POLICY_CONFIG_KEY)) {
+                throw new IllegalArgumentException("Step policies can't be used with mini-batch gradient descent");
+            }
+            schedule = LearningRateSchedule.parse(config.getString(SCHEDULE_CONFIG_KEY, DEFAULT_SCHEDULE),
+                    config.getDouble(LEARNING_RATE_CONFIG_KEY, DEFAULT_LEARNING_RATE),
+                    config.getDouble(DECAY_CONFIG_KEY, 0.0));
+        } else {
+            schedule = null;
+            stepPolicy();
+        }
+        maxEpochs = config.getInteger(MAX_EPOCHS_CONFIG_KEY, Integer.MAX_VALUE);
+        maxIterations = config.getInteger(MAX_ITERATIONS_CONFIG_KEY, Integer.MAX_VALUE);
+        seed = config.getLong(SEED_CONFIG_KEY, System.nanoTime());
+
+        checkpointFilename = config.getString(CHECKPOINT_CONFIG_KEY);
+        checkpointInterval = config.getInteger(CHECKPOINT_INTERVAL_CONFIG_KEY, DEFAULT_CHECKPOINT_INTERVAL);
+        if (checkpointInterval <= 0) {
+            throw new IllegalArgumentException("The checkpoint interval should be positive");
+        }
+
+        String solver = config.getString(SOLVER_CONFIG_KEY, DESCENT_SOLVER);
+        if (!DESCENT_SOLVER.equals(solver) && !NORMAL_SOLVER.equals(solver)) {
+            throw new IllegalArgumentException("Unknown solver: " + solver);
+        }
+        normal = NORMAL_SOLVER.equals(solver);
+        if (normal && batchSize != null) {
+            throw new IllegalArgumentException("The normal equations solver can't be used with "
+                    + "mini-batch gradient descent");
+        }
+    }
+
+    public static boolean isLoadedIntoHeap(JsonObject config) {
+        return !config.getBoolean(STREAMING_CONFIG_KEY, false) && !config.getBoolean(MAPPED_CONFIG_KEY, false);
+    }
+
+    public static int loadingThreads(JsonObject config) {
+        return InputFileReader.loadingThreads(config.getInteger(LOADING_THREADS_CONFIG_KEY));
+    }
+
+    public static Dataset loadDataset(JsonObject config, String inputFilename) throws IOException {
+        if (config.getBoolean(STREAMING_CONFIG_KEY, false)) {
+            return new StreamingInputFileReader(inputFilename,
+                    config.getInteger(CHUNK_SIZE_CONFIG_KEY, DEFAULT_CHUNK_SIZE)).getDataset();
+        } else if (config.getBoolean(MAPPED_CONFIG_KEY, false)) {
+            return new MappedInputFileReader(inputFilename).getDataset();
+        } else {
+            return new InputFileReader(inputFilename).getDataset(loadingThreads(config));
+        }
+    }
+
+    public Dataset loadDataset() throws IOException {
+        return loadDataset(config, inputFilename);
+    }
+
+    public StepPolicy stepPolicy() {
+        return StepPolicy.parse(config.getString(STEP_POLICY_CONFIG_KEY, StepPolicy.Type.BB.name()),
+                config.getDouble(LEARNING_RATE_CONFIG_KEY, DEFAULT_LEARNING_RATE),
+                config.getDouble(MOMENTUM_CONFIG_KEY, DEFAULT_MOMENTUM));
+    }
+
+    public OptimizationMetrics metrics() throws IOException {
+        String traceFilename = config.getString(TRACE_CONFIG_KEY);
+        return reportsMetrics() || traceFilename != null ? new OptimizationMetrics(traceFilename) : null;
+    }
+
+    public Checkpoint restoreCheckpoint(int dimensiality) throws IOException {
+        return Checkpoint.restore(checkpointFilename, config.getBoolean(RESUME_CONFIG_KEY, false),
+                config.getString(INITIAL_WEIGHTS_CONFIG_KEY), dimensiality);
+    }
+
+    public String inputFilename() {
+        return inputFilename;
+    }
+
+    public String outputFilename() {
+        return outputFilename;
+    }
+
+    public double convergence() {
+        return convergence;
+    }
+
+    public boolean isMapped() {
+        return config.getBoolean(MAPPED_CONFIG_KEY, false);
+    }
+
+    public boolean isStreaming() {
+        return config.getBoolean(STREAMING_CONFIG_KEY, false);
+    }
+
+    public boolean isLoadedIntoHeap() {
+        return isLoadedIntoHeap(config);
+    }
+
+    public int loadingThreads() {
+        return loadingThreads(config);
+    }
+
+    public Integer batchSize() {
+        return batchSize;
+    }
+
+    public LearningRateSchedule schedule() {
+        return schedule;
+    }
+
+    public int maxEpochs() {
+        return maxEpochs;
+    }
+
+    public int maxIterations() {
+        return maxIterations;
+    }
+
+    public long seed() {
+        return seed;
+    }
+
+    public String checkpointFilename() {
+        return checkpointFilename;
+    }
+
+    public int checkpointInterval() {
+        return checkpointInterval;
+    }
+
+    public boolean isNormal() {
+        return normal;
+    }
+
+    public boolean reportsMetrics() {
+        return config.getBoolean(METRICS_CONFIG_KEY, false);
+    }
+}
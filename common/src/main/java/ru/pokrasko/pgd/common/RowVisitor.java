@@ -0,0 +1,5 @@
+package ru.pokrasko.pgd.common;
+
+public interface RowVisitor {
+    void visit(double[] coords, int offset, double value);
+}
@@ -0,0 +1,49 @@
+package ru.pokrasko.pgd.common;
+
+public class ScalarGradientKernel implements GradientKernel {
+    @Override
+    public double linearValue(double[] weights, double[] coords, int offset) {
+        int dimensiality = weights.length - 1;
+        double value = weights[dimensiality];
+        for (int i = 0; i < dimensiality; i++) {
+            value += weights[i] * coords[offset + i];
+        }
+        return value;
+    }
+
+    @Override
+    public double accumulate(double[] weights, double[] coords, double[] values, int from, int to,
+                             double[] gradient) {
+        int dimensiality = weights.length - 1;
+
+        double residualSquareSum = 0;
+        for (int i = from; i < to; i++) {
+            residualSquareSum += accumulateRow(weights, coords, i * dimensiality, values[i], gradient);
+        }
+        return residualSquareSum;
+    }
+
+    @Override
+    public double accumulate(double[] weights, double[] coords, double[] values, int offset,
+                             int[] rows, int from, int to, double[] gradient) {
+        int dimensiality = weights.length - 1;
+
+        double residualSquareSum = 0;
+        for (int i = from; i < to; i++) {
+            int row = offset + rows[i];
+            residualSquareSum += accumulateRow(weights, coords, row * dimensiality, values[row], gradient);
+        }
+        return residualSquareSum;
+    }
+
+    private double accumulateRow(double[] weights, double[] coords, int offset, double value, double[] gradient) {
+        int dimensiality = weights.length - 1;
+
+        double residual = linearValue(weights, coords, offset) - value;
+        for (int j = 0; j < dimensiality; j++) {
+            gradient[j] += residual * coords[offset + j];
+        }
+        gradient[dimensiality] += residual;
+        return residual * residual;
+    }
+}
@@ -0,0 +1,93 @@
+package ru.pokrasko.pgd.common;
+
+import java.util.Arrays;
+
+public class SparseDataset implements Dataset {
+    final int[] rowPointers;
+    final int[] columns;
+    final double[] coords;
+    final double[] values;
+    final int offset;
+    final int size;
+    final int dimensiality;
+
+    public SparseDataset(int dimensiality, int[] rowPointers, int[] columns, double[] coords, double[] values) {
+        this(dimensiality, rowPointers, columns, coords, values, 0, values.length);
+    }
+
+    private SparseDataset(int dimensiality, int[] rowPointers, int[] columns, double[] coords, double[] values,
+                          int offset, int size) {
+        assert rowPointers.length == values.length + 1 && columns.length == coords.length
+                && rowPointers[values.length] == coords.length;
+
+        this.rowPointers = rowPointers;
+        this.columns = columns;
+        this.coords = coords;
+        this.values = values;
+        this.offset = offset;
+        this.size = size;
+        this.dimensiality = dimensiality;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int dimensiality() {
+        return dimensiality;
+    }
+
+    public int nonZerosNumber() {
+        return rowPointers[offset + size] - rowPointers[offset];
+    }
+
+    @Override
+    public double coord(int row, int index) {
+        assert row >= 0 && row < size && index >= 0 && index < dimensiality;
+
+        int position = Arrays.binarySearch(columns, rowPointers[offset + row], rowPointers[offset + row + 1], index);
+        return position >= 0 ? coords[position] : 0.0;
+    }
+
+    @Override
+    public double value(int row) {
+        assert row >= 0 && row < size;
+
+        return values[offset + row];
+    }
+
+    @Override
+    public double accumulate(double[] weights, double[] gradient) {
+        return GradientDescent.accumulate(weights, rowPointers, columns, coords, values, offset, offset + size,
+                gradient);
+    }
+
+    @Override
+    public double accumulate(double[] weights, double[] gradient, int[] rows, int from, int to) {
+        return GradientDescent.accumulate(weights, rowPointers, columns, coords, values, offset, rows, from, to,
+                gradient);
+    }
+
+    @Override
+    public void forEach(RowVisitor visitor) {
+        double[] row = new double[dimensiality];
+        for (int i = offset; i < offset + size; i++) {
+            for (int j = rowPointers[i]; j < rowPointers[i + 1]; j++) {
+                row[columns[j]] = coords[j];
+            }
+            visitor.visit(row, 0, values[i]);
+            for (int j = rowPointers[i]; j < rowPointers[i + 1]; j++) {
+                row[columns[j]] = 0.0;
+            }
+        }
+    }
+
+    @Override
+    public SparseDataset subset(int from, int to) {
+        assert from >= 0 && from <= to && to <= size;
+
+        return new SparseDataset(dimensiality, rowPointers, columns, coords, values, offset + from, to - from);
+    }
+}
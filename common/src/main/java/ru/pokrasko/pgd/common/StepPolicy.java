@@ -0,0 +1,54 @@
+package ru.pokrasko.pgd.common;
+
+import java.util.Locale;
+import java.util.function.DoubleUnaryOperator;
+
+public abstract class StepPolicy {
+    public enum Type {
+        BB, ARMIJO, NESTEROV, ADAM
+    }
+
+    public static StepPolicy parse(String type, double learningRate, double momentum) {
+        Type parsedType;
+        try {
+            parsedType = Type.valueOf(type.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown step policy \"" + type + "\"");
+        }
+        if (learningRate <= 0) {
+            throw new IllegalArgumentException("The learning rate should be positive");
+        }
+        if (momentum < 0 || momentum >= 1) {
+            throw new IllegalArgumentException("The momentum should be non-negative and less than 1");
+        }
+
+        switch (parsedType) {
+            case ARMIJO:
+                return new ArmijoPolicy();
+            case NESTEROV:
+                return new NesterovPolicy(learningRate, momentum);
+            case ADAM:
+                return new AdamPolicy(learningRate, momentum);
+            default:
+                return new BarzilaiBorweinPolicy();
+        }
+    }
+
+    public abstract Type type();
+
+    public boolean searchesLine() {
+        return false;
+    }
+
+    public abstract double update(double[] weights, double costFunction, double[] gradient,
+                                  DoubleUnaryOperator lineCost, double[] newWeights);
+
+    public abstract double[][] state();
+
+    public abstract void restore(double[][] state);
+
+    @Override
+    public String toString() {
+        return type().name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,180 @@
+package ru.pokrasko.pgd.common;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class StreamingDataset implements Dataset {
+    private final String inputFilename;
+    private final int dimensiality;
+    private final int offset;
+    private final int size;
+    private final int chunkSize;
+
+    private ByteBuffer[] buffers;
+    private ExecutorService prefetcher;
+    private FileChannel channel;
+
+    StreamingDataset(String inputFilename, int dimensiality, int offset, int size, int chunkSize) {
+        this.inputFilename = inputFilename;
+        this.dimensiality = dimensiality;
+        this.offset = offset;
+        this.size = size;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int dimensiality() {
+        return dimensiality;
+    }
+
+    @Override
+    public double coord(int row, int index) {
+        throw new UnsupportedOperationException("Streaming dataset doesn't support random access");
+    }
+
+    @Override
+    public double value(int row) {
+        throw new UnsupportedOperationException("Streaming dataset doesn't support random access");
+    }
+
+    @Override
+    public StreamingDataset subset(int from, int to) {
+        assert from >= 0 && from <= to && to <= size;
+
+        return new StreamingDataset(inputFilename, dimensiality, offset + from, to - from, chunkSize);
+    }
+
+    @Override
+    public double accumulate(double[] weights, double[] gradient) {
+        double[] residualSquareSum = new double[1];
+        stream((rows, rowsNumber) ->
+                residualSquareSum[0] += GradientDescent.accumulate(weights, rows, 0, rowsNumber, gradient));
+        return residualSquareSum[0];
+    }
+
+    @Override
+    public double accumulate(double[] weights, double[] gradient, int[] rows, int from, int to) {
+        throw new UnsupportedOperationException("Streaming dataset doesn't support random access");
+    }
+
+    @Override
+    public void forEach(RowVisitor visitor) {
+        double[] coords = new double[dimensiality];
+        stream((rows, rowsNumber) -> MappedDataset.visitRows(rows, 0, rowsNumber, coords, visitor));
+    }
+
+    @Override
+    public void close() {
+        if (prefetcher != null) {
+            prefetcher.shutdownNow();
+            prefetcher = null;
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                channel = null;
+            }
+        }
+    }
+
+    private void stream(ChunkHandler handler) {
+        int rowBytes = (dimensiality + 1) * Double.BYTES;
+        if (buffers == null) {
+            int chunkBytes = Math.min(chunkSize, Math.max(size, 1)) * rowBytes;
+            buffers = new ByteBuffer[]{ByteBuffer.allocateDirect(chunkBytes), ByteBuffer.allocateDirect(chunkBytes)};
+        }
+        if (prefetcher == null) {
+            prefetcher = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "streaming-dataset-prefetcher");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        Future<ByteBuffer> chunk = null;
+        try {
+            if (channel == null) {
+                channel = FileChannel.open(Paths.get(inputFilename), StandardOpenOption.READ);
+            }
+            chunk = prefetcher.submit(() -> readChunk(buffers[0], 0));
+            for (int from = 0, chunkIndex = 0; from < size; from += chunkSize, chunkIndex++) {
+                ByteBuffer buffer = chunk.get();
+                if (from + chunkSize < size) {
+                    int nextFrom = from + chunkSize;
+                    ByteBuffer nextBuffer = buffers[(chunkIndex + 1) % 2];
+                    chunk = prefetcher.submit(() -> readChunk(nextBuffer, nextFrom));
+                }
+
+                handler.handle(buffer.asDoubleBuffer(), buffer.remaining() / rowBytes);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Input streaming was interrupted", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException
+                    ? new UncheckedIOException((IOException) e.getCause())
+                    : new IllegalStateException("Input streaming failed", e.getCause());
+        } finally {
+            awaitPrefetch(chunk);
+        }
+    }
+
+    private static void awaitPrefetch(Future<ByteBuffer> chunk) {
+        if (chunk == null) {
+            return;
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                chunk.get();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException ignored) {
+                break;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ByteBuffer readChunk(ByteBuffer buffer, int from) throws IOException {
+        int rowBytes = (dimensiality + 1) * Double.BYTES;
+        long position = StreamingInputFileReader.HEADER_BYTES + (long) (offset + from) * rowBytes;
+
+        buffer.clear();
+        buffer.limit(Math.min(chunkSize, size - from) * rowBytes);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of input file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private interface ChunkHandler {
+        void handle(DoubleBuffer rows, int rowsNumber);
+    }
+}
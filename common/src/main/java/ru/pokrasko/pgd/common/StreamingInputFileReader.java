@@ -0,0 +1,45 @@
+package ru.pokrasko.pgd.common;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+public class StreamingInputFileReader {
+    static final int HEADER_BYTES = 2 * Integer.BYTES;
+
+    private String inputFilename;
+    private int chunkSize;
+    private Dataset dataset;
+
+    public StreamingInputFileReader(String inputFilename, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("The chunk size should be positive");
+        }
+
+        this.inputFilename = inputFilename;
+        this.chunkSize = chunkSize;
+    }
+
+    public Dataset getDataset() throws IOException {
+        if (dataset == null) {
+            try (RandomAccessFile file = new RandomAccessFile(inputFilename, "r")) {
+                InputFileHeader header = InputFileHeader.read(file);
+                if (header.format() != InputFileHeader.DENSE_FORMAT) {
+                    throw new IOException("Streaming input supports only dense double precision input files");
+                }
+                int size = header.size();
+                int dimensiality = header.dimensiality();
+                if (file.length() != HEADER_BYTES + (long) size * (dimensiality + 1) * Double.BYTES) {
+                    throw new IOException("Input file size doesn't match its header");
+                }
+
+                if ((long) (dimensiality + 1) * Double.BYTES > Integer.MAX_VALUE) {
+                    throw new IOException("Points of dimensiality " + dimensiality + " are too large to be streamed");
+                }
+                int rowBytes = (dimensiality + 1) * Double.BYTES;
+                dataset = new StreamingDataset(inputFilename, dimensiality, 0, size,
+                        Math.min(chunkSize, Integer.MAX_VALUE / rowBytes));
+            }
+        }
+        return dataset;
+    }
+}
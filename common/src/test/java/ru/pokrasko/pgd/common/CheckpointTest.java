@@ -0,0 +1,74 @@
+package ru.pokrasko.pgd.common;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class CheckpointTest {
+    private static final int MAGIC = 0x50474443;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsWrittenCheckpoint() throws IOException {
+        String filename = folder.getRoot().toPath().resolve("checkpoint").toString();
+        double[][] stepState = {{0.1, 0.2}, {0.3, 0.4}, {5}};
+        new Checkpoint(12, 3, 0.5, new double[] {1, 2, 3}, StepPolicy.Type.ADAM, stepState).write(filename);
+
+        Checkpoint checkpoint = Checkpoint.read(filename);
+        assertEquals(12, checkpoint.iterations());
+        assertEquals(3, checkpoint.epochs());
+        assertEquals(0.5, checkpoint.costFunction(), 0);
+        assertArrayEquals(new double[] {1, 2, 3}, checkpoint.weights(), 0);
+        assertEquals(StepPolicy.Type.ADAM, checkpoint.stepType());
+        assertArrayEquals(stepState, checkpoint.stepState());
+    }
+
+    @Test
+    public void readsCheckpointWithoutStepPolicy() throws IOException {
+        String filename = folder.getRoot().toPath().resolve("checkpoint").toString();
+        new Checkpoint(4, 0, 1.5, new double[] {1, 2}, null, null).write(filename);
+
+        Checkpoint checkpoint = Checkpoint.read(filename);
+        assertEquals(4, checkpoint.iterations());
+        assertNull(checkpoint.stepType());
+        assertNull(checkpoint.stepState());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        String filename = folder.newFile().getPath();
+        try (DataOutputStream stream = new DataOutputStream(new FileOutputStream(filename))) {
+            stream.writeInt(MAGIC + 1);
+            stream.writeInt(1);
+        }
+        Checkpoint.read(filename);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFormatVersions() throws IOException {
+        String filename = folder.newFile().getPath();
+        try (DataOutputStream stream = new DataOutputStream(new FileOutputStream(filename))) {
+            stream.writeInt(MAGIC);
+            stream.writeInt(2);
+        }
+        Checkpoint.read(filename);
+    }
+
+    @Test
+    public void startsAnewWithoutCheckpointFile() throws IOException {
+        String filename = folder.getRoot().toPath().resolve("missing").toString();
+
+        Checkpoint checkpoint = Checkpoint.restore(filename, true, null, 2);
+        assertEquals(0, checkpoint.iterations());
+        assertArrayEquals(new double[] {1, 1, 1}, checkpoint.weights(), 0);
+        assertNull(checkpoint.stepType());
+    }
+}
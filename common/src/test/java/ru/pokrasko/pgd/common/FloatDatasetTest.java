@@ -0,0 +1,135 @@
+package ru.pokrasko.pgd.common;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class FloatDatasetTest {
+    private static final double DELTA = 1e-12;
+
+    private static final int DIMENSIALITY = 2;
+    private static final double[] COORDS = {0.1, -2.7, 3.3, 1e-3, -0.45, 12.5, 7.1, 0.2};
+    private static final double[] VALUES = {1.1, -0.3, 2.2, 9.9};
+    private static final double[] WEIGHTS = {0.3, -1.2, 0.7};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String inputFilename;
+    private Dataset roundedDataset;
+
+    @Before
+    public void writeInput() throws IOException {
+        inputFilename = folder.newFile().getPath();
+        try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(inputFilename)))) {
+            ByteBuffer header = new InputFileHeader(InputFileHeader.FLOAT_FORMAT, VALUES.length, DIMENSIALITY, 0)
+                    .toBuffer();
+            stream.write(header.array(), 0, header.limit());
+            for (int i = 0; i < VALUES.length; i++) {
+                for (int j = 0; j < DIMENSIALITY; j++) {
+                    stream.writeFloat((float) COORDS[i * DIMENSIALITY + j]);
+                }
+                stream.writeFloat((float) VALUES[i]);
+            }
+        }
+
+        double[] coords = new double[COORDS.length];
+        for (int i = 0; i < coords.length; i++) {
+            coords[i] = (float) COORDS[i];
+        }
+        double[] values = new double[VALUES.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (float) VALUES[i];
+        }
+        roundedDataset = new DenseDataset(DIMENSIALITY, coords, values);
+    }
+
+    @Test
+    public void readsFloatFile() throws IOException {
+        InputFileReader reader = new InputFileReader(inputFilename);
+        assertTrue(reader.isFloat());
+
+        Dataset dataset = reader.getDataset();
+        assertTrue(dataset instanceof FloatDataset);
+        assertSameRows(roundedDataset, dataset);
+    }
+
+    @Test
+    public void readsFloatFileInParallel() throws IOException {
+        Dataset dataset = new InputFileReader(inputFilename).getDataset(3);
+        assertTrue(dataset instanceof FloatDataset);
+        assertSameRows(roundedDataset, dataset);
+    }
+
+    @Test
+    public void readsFloatRange() throws IOException {
+        Dataset dataset = new InputFileReader(inputFilename).getDataset(1, 3);
+        assertSameRows(roundedDataset.subset(1, 3), dataset);
+    }
+
+    @Test
+    public void costsMatchRoundedDenseDataset() throws IOException {
+        Dataset dataset = new InputFileReader(inputFilename).getDataset();
+        assertSameCosts(roundedDataset, dataset);
+        assertSameCosts(roundedDataset.subset(2, 4), dataset.subset(2, 4));
+
+        int[] rows = {2, 0, 3};
+        double[] expectedGradient = new double[WEIGHTS.length];
+        double[] gradient = new double[WEIGHTS.length];
+        assertEquals(GradientDescent.costAndGradient(WEIGHTS, roundedDataset, rows, 1, 3, expectedGradient),
+                GradientDescent.costAndGradient(WEIGHTS, dataset, rows, 1, 3, gradient), DELTA);
+        assertArrayEquals(expectedGradient, gradient, DELTA);
+    }
+
+    @Test
+    public void readsHeaderLazily() throws IOException {
+        assertEquals(VALUES.length, new InputFileReader(inputFilename).getAvailableSize());
+        new InputFileReader(inputFilename).checkLength();
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedFile() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(inputFilename, "rw")) {
+            file.setLength(file.length() - 1);
+        }
+        new InputFileReader(inputFilename).checkLength();
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedFileInParallel() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(inputFilename, "rw")) {
+            file.setLength(file.length() - Float.BYTES);
+        }
+        new InputFileReader(inputFilename).getDataset(2);
+    }
+
+    private static void assertSameRows(Dataset expected, Dataset actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.dimensiality(), actual.dimensiality());
+        for (int i = 0; i < expected.size(); i++) {
+            for (int j = 0; j < expected.dimensiality(); j++) {
+                assertEquals(expected.coord(i, j), actual.coord(i, j), 0);
+            }
+            assertEquals(expected.value(i), actual.value(i), 0);
+        }
+    }
+
+    private static void assertSameCosts(Dataset expected, Dataset actual) {
+        double[] expectedGradient = new double[WEIGHTS.length];
+        double[] gradient = new double[WEIGHTS.length];
+        assertEquals(GradientDescent.costAndGradient(WEIGHTS, expected, expectedGradient),
+                GradientDescent.costAndGradient(WEIGHTS, actual, gradient), DELTA);
+        assertArrayEquals(expectedGradient, gradient, DELTA);
+
+        double[] direction = {-0.5, 1, 2};
+        assertArrayEquals(expected.directionalSums(WEIGHTS, direction), actual.directionalSums(WEIGHTS, direction),
+                DELTA);
+    }
+}
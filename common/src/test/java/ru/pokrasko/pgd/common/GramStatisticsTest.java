@@ -0,0 +1,88 @@
+package ru.pokrasko.pgd.common;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GramStatisticsTest {
+    private static final double DELTA = 1e-9;
+
+    private static final double[] COORDS = {1, 2, 2, 1, 3, 5, 4, 3, 0, -1, 5, 5};
+    private static final double[] NOISY_VALUES = {-1, 3.5, -4, 6, 7.5, 1};
+
+    @Test
+    public void solvesExactSystem() {
+        double[] values = new double[COORDS.length / 2];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 2 * COORDS[2 * i] - 3 * COORDS[2 * i + 1] + 5;
+        }
+        GramStatistics statistics = new GramStatistics(2);
+        statistics.add(new DenseDataset(2, COORDS, values));
+
+        assertArrayEquals(new double[] {2, -3, 5}, statistics.solve(), DELTA);
+    }
+
+    @Test
+    public void solutionMinimizesCost() {
+        Dataset dataset = new DenseDataset(2, COORDS, NOISY_VALUES);
+        GramStatistics statistics = new GramStatistics(2);
+        statistics.add(dataset);
+
+        double[] weights = statistics.solve();
+        double[] gradient = new double[3];
+        GradientDescent.costAndGradient(weights, dataset, gradient);
+        assertArrayEquals(new double[3], gradient, DELTA);
+    }
+
+    @Test
+    public void mergesPartialStatistics() {
+        Dataset dataset = new DenseDataset(2, COORDS, NOISY_VALUES);
+        GramStatistics whole = new GramStatistics(2);
+        whole.add(dataset);
+
+        GramStatistics merged = new GramStatistics(2);
+        GramStatistics first = new GramStatistics(2);
+        first.add(dataset.subset(0, 2));
+        GramStatistics second = new GramStatistics(2);
+        second.add(dataset.subset(2, 6));
+        merged.merge(first);
+        merged.merge(new GramStatistics(2));
+        merged.merge(second);
+
+        assertEquals(whole.size(), merged.size());
+        assertArrayEquals(whole.means(), merged.means(), DELTA);
+        assertArrayEquals(whole.scatter(), merged.scatter(), DELTA);
+        assertArrayEquals(whole.solve(), merged.solve(), DELTA);
+    }
+
+    @Test
+    public void matchesDatasetCostAndDirectionalSums() {
+        Dataset dataset = new DenseDataset(2, COORDS, NOISY_VALUES);
+        GramStatistics statistics = new GramStatistics(2);
+        statistics.add(dataset);
+        double[] weights = {0.5, -1.5, 2};
+        double[] direction = {1, 0.25, -3};
+
+        double[] expectedGradient = new double[3];
+        double[] gradient = new double[3];
+        assertEquals(GradientDescent.costAndGradient(weights, dataset, expectedGradient),
+                statistics.costAndGradient(weights, gradient), DELTA);
+        assertArrayEquals(expectedGradient, gradient, DELTA);
+        assertArrayEquals(dataset.directionalSums(weights, direction),
+                statistics.directionalSums(weights, direction), DELTA);
+    }
+
+    @Test
+    public void doesNotSolveSingularSystem() {
+        assertNull(new GramStatistics(2).solve());
+
+        GramStatistics statistics = new GramStatistics(2);
+        statistics.add(new DenseDataset(2, new double[] {1, 2, 2, 4, 3, 6}, new double[] {1, 2, 3}));
+        assertNull(statistics.solve());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTooHighDimensiality() {
+        new GramStatistics(1 << 16);
+    }
+}
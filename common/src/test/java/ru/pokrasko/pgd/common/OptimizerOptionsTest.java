@@ -0,0 +1,100 @@
+package ru.pokrasko.pgd.common;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OptimizerOptionsTest {
+    private static JsonObject config() {
+        return new JsonObject()
+                .put(OptimizerOptions.INPUT_CONFIG_KEY, "input.bin")
+                .put(OptimizerOptions.CONVERGENCE_CONFIG_KEY, 1e-6);
+    }
+
+    @Test
+    public void appliesDefaults() {
+        OptimizerOptions options = new OptimizerOptions(config());
+        assertEquals("input.bin", options.inputFilename());
+        assertNull(options.outputFilename());
+        assertEquals(1e-6, options.convergence(), 0);
+        assertNull(options.batchSize());
+        assertNull(options.schedule());
+        assertEquals(Integer.MAX_VALUE, options.maxIterations());
+        assertEquals(10, options.checkpointInterval());
+        assertFalse(options.isNormal());
+        assertTrue(options.isLoadedIntoHeap());
+        assertEquals(StepPolicy.Type.BB, options.stepPolicy().type());
+    }
+
+    @Test
+    public void parsesFreshStepPolicies() {
+        OptimizerOptions options = new OptimizerOptions(config().put(OptimizerOptions.STEP_POLICY_CONFIG_KEY, "adam"));
+        StepPolicy first = options.stepPolicy();
+        assertEquals(StepPolicy.Type.ADAM, first.type());
+        assertNotSame(first, options.stepPolicy());
+    }
+
+    @Test
+    public void parsesMiniBatchOptions() {
+        OptimizerOptions options = new OptimizerOptions(config()
+                .put(OptimizerOptions.BATCH_SIZE_CONFIG_KEY, 64)
+                .put(OptimizerOptions.MAX_EPOCHS_CONFIG_KEY, 5)
+                .put(OptimizerOptions.SEED_CONFIG_KEY, 7L));
+        assertEquals(Integer.valueOf(64), options.batchSize());
+        assertNotNull(options.schedule());
+        assertEquals(5, options.maxEpochs());
+        assertEquals(7L, options.seed());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMissingInput() {
+        new OptimizerOptions(config().put(OptimizerOptions.INPUT_CONFIG_KEY, (String) null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMissingConvergence() {
+        new OptimizerOptions(config().put(OptimizerOptions.CONVERGENCE_CONFIG_KEY, (Double) null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveBatchSize() {
+        new OptimizerOptions(config().put(OptimizerOptions.BATCH_SIZE_CONFIG_KEY, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMiniBatchesWithStreaming() {
+        new OptimizerOptions(config()
+                .put(OptimizerOptions.BATCH_SIZE_CONFIG_KEY, 64)
+                .put(OptimizerOptions.STREAMING_CONFIG_KEY, true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsStepPolicyWithMiniBatches() {
+        new OptimizerOptions(config()
+                .put(OptimizerOptions.BATCH_SIZE_CONFIG_KEY, 64)
+                .put(OptimizerOptions.STEP_POLICY_CONFIG_KEY, "adam"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownStepPolicy() {
+        new OptimizerOptions(config().put(OptimizerOptions.STEP_POLICY_CONFIG_KEY, "newton"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveCheckpointInterval() {
+        new OptimizerOptions(config().put(OptimizerOptions.CHECKPOINT_INTERVAL_CONFIG_KEY, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownSolver() {
+        new OptimizerOptions(config().put(OptimizerOptions.SOLVER_CONFIG_KEY, "qr"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNormalSolverWithMiniBatches() {
+        new OptimizerOptions(config()
+                .put(OptimizerOptions.SOLVER_CONFIG_KEY, OptimizerOptions.NORMAL_SOLVER)
+                .put(OptimizerOptions.BATCH_SIZE_CONFIG_KEY, 64));
+    }
+}
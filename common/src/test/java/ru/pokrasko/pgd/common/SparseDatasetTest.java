@@ -0,0 +1,134 @@
+package ru.pokrasko.pgd.common;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class SparseDatasetTest {
+    private static final double DELTA = 1e-12;
+
+    private static final int DIMENSIALITY = 4;
+    private static final int[][] COLUMNS = {{0, 3}, {}, {1, 2, 3}, {2}};
+    private static final double[][] COORDS = {{1.5, -2}, {}, {2, 0.5, 4}, {-3}};
+    private static final double[] VALUES = {3, -1, 0.25, 7};
+    private static final double[] WEIGHTS = {0.5, -1, 2, 0.25, 1};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String inputFilename;
+    private Dataset denseDataset;
+
+    @Before
+    public void writeInput() throws IOException {
+        inputFilename = folder.newFile().getPath();
+        try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(inputFilename)))) {
+            ByteBuffer header = new InputFileHeader(InputFileHeader.SPARSE_FORMAT, VALUES.length, DIMENSIALITY, 6)
+                    .toBuffer();
+            stream.write(header.array(), 0, header.limit());
+            for (int i = 0; i < VALUES.length; i++) {
+                stream.writeInt(COLUMNS[i].length);
+                for (int j = 0; j < COLUMNS[i].length; j++) {
+                    stream.writeInt(COLUMNS[i][j]);
+                    stream.writeDouble(COORDS[i][j]);
+                }
+                stream.writeDouble(VALUES[i]);
+            }
+        }
+
+        double[] coords = new double[VALUES.length * DIMENSIALITY];
+        for (int i = 0; i < VALUES.length; i++) {
+            for (int j = 0; j < COLUMNS[i].length; j++) {
+                coords[i * DIMENSIALITY + COLUMNS[i][j]] = COORDS[i][j];
+            }
+        }
+        denseDataset = new DenseDataset(DIMENSIALITY, coords, VALUES);
+    }
+
+    @Test
+    public void readsSparseFile() throws IOException {
+        InputFileReader reader = new InputFileReader(inputFilename);
+        assertTrue(reader.isSparse());
+
+        Dataset dataset = reader.getDataset(2);
+        assertTrue(dataset instanceof SparseDataset);
+        assertEquals(6, ((SparseDataset) dataset).nonZerosNumber());
+        assertSameRows(denseDataset, dataset);
+    }
+
+    @Test
+    public void readsSparseRange() throws IOException {
+        SparseDataset dataset = (SparseDataset) new InputFileReader(inputFilename).getDataset(1, 3);
+        assertEquals(3, dataset.nonZerosNumber());
+        assertSameRows(denseDataset.subset(1, 3), dataset);
+    }
+
+    @Test
+    public void readsHeaderLazily() throws IOException {
+        assertEquals(VALUES.length, new InputFileReader(inputFilename).getAvailableSize());
+        new InputFileReader(inputFilename).checkLength();
+    }
+
+    @Test
+    public void costsMatchDenseDataset() throws IOException {
+        Dataset dataset = new InputFileReader(inputFilename).getDataset();
+        assertSameCosts(denseDataset, dataset);
+        assertSameCosts(denseDataset.subset(1, 4), dataset.subset(1, 4));
+
+        int[] rows = {3, 0, 2};
+        double[] expectedGradient = new double[WEIGHTS.length];
+        double[] gradient = new double[WEIGHTS.length];
+        assertEquals(GradientDescent.costAndGradient(WEIGHTS, denseDataset, rows, 0, 3, expectedGradient),
+                GradientDescent.costAndGradient(WEIGHTS, dataset, rows, 0, 3, gradient), DELTA);
+        assertArrayEquals(expectedGradient, gradient, DELTA);
+    }
+
+    @Test(expected = EOFException.class)
+    public void failsOnTruncatedFile() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(inputFilename, "rw")) {
+            file.setLength(file.length() - Double.BYTES - 2);
+        }
+        new InputFileReader(inputFilename).getDataset();
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsUnsortedColumns() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(inputFilename, "rw")) {
+            file.seek(new InputFileHeader(InputFileHeader.SPARSE_FORMAT, 0, 0, 0).bytes() + Integer.BYTES);
+            file.writeInt(3);
+        }
+        new InputFileReader(inputFilename).getDataset();
+    }
+
+    private static void assertSameRows(Dataset expected, Dataset actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.dimensiality(), actual.dimensiality());
+        for (int i = 0; i < expected.size(); i++) {
+            for (int j = 0; j < expected.dimensiality(); j++) {
+                assertEquals(expected.coord(i, j), actual.coord(i, j), 0);
+            }
+            assertEquals(expected.value(i), actual.value(i), 0);
+        }
+    }
+
+    private static void assertSameCosts(Dataset expected, Dataset actual) {
+        double[] expectedGradient = new double[WEIGHTS.length];
+        double[] gradient = new double[WEIGHTS.length];
+        assertEquals(GradientDescent.costAndGradient(WEIGHTS, expected, expectedGradient),
+                GradientDescent.costAndGradient(WEIGHTS, actual, gradient), DELTA);
+        assertArrayEquals(expectedGradient, gradient, DELTA);
+        assertEquals(GradientDescent.costFunction(WEIGHTS, expected), GradientDescent.costFunction(WEIGHTS, actual),
+                DELTA);
+
+        double[] direction = {1, 0, -1, 0.5, 2};
+        assertArrayEquals(expected.directionalSums(WEIGHTS, direction), actual.directionalSums(WEIGHTS, direction),
+                DELTA);
+    }
+}
@@ -0,0 +1,149 @@
+package ru.pokrasko.pgd.common;
+
+import org.junit.Test;
+
+import java.util.function.DoubleUnaryOperator;
+
+import static org.junit.Assert.*;
+
+public class StepPolicyTest {
+    private static final double DELTA = 1e-12;
+
+    @Test
+    public void parsesTypeIgnoringCase() {
+        assertEquals(StepPolicy.Type.ARMIJO, StepPolicy.parse("Armijo", 0.1, 0.9).type());
+        assertEquals("nesterov", StepPolicy.parse("NESTEROV", 0.1, 0.9).toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownType() {
+        StepPolicy.parse("newton", 0.1, 0.9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMomentumOfOne() {
+        StepPolicy.parse("adam", 0.1, 1.0);
+    }
+
+    @Test
+    public void barzilaiBorweinUsesSpectralStep() {
+        StepPolicy policy = StepPolicy.parse("bb", 0.1, 0.9);
+        double[] newWeights = new double[2];
+
+        assertEquals(1.0, policy.update(new double[] {0, 0}, 0, new double[] {1, 2}, null, newWeights), DELTA);
+        assertArrayEquals(new double[] {-1, -2}, newWeights, DELTA);
+
+        double step = policy.update(new double[] {-1, -2}, 0, new double[] {0.5, 1.5}, null, newWeights);
+        assertEquals(Math.abs((-1 * -0.5 + -2 * -0.5) / (0.25 + 0.25)), step, DELTA);
+        assertArrayEquals(new double[] {-1 - 3 * 0.5, -2 - 3 * 1.5}, newWeights, DELTA);
+    }
+
+    @Test
+    public void barzilaiBorweinFallsBackToPreviousStep() {
+        StepPolicy policy = StepPolicy.parse("bb", 0.1, 0.9);
+        double[] gradient = {1, 2};
+        double[] newWeights = new double[2];
+
+        policy.update(new double[] {0, 0}, 0, gradient, null, newWeights);
+        double step = policy.update(newWeights.clone(), 0, gradient, null, newWeights);
+        assertEquals(1.0, step, DELTA);
+        assertArrayEquals(new double[] {-2, -4}, newWeights, DELTA);
+    }
+
+    @Test
+    public void barzilaiBorweinFallsBackToRestoredStep() {
+        StepPolicy policy = StepPolicy.parse("bb", 0.1, 0.9);
+        double[] newWeights = new double[2];
+        policy.update(new double[] {0, 0}, 0, new double[] {1, 2}, null, newWeights);
+        policy.update(new double[] {-1, -2}, 0, new double[] {0.5, 1.5}, null, newWeights);
+
+        StepPolicy restoredPolicy = StepPolicy.parse("bb", 0.1, 0.9);
+        restoredPolicy.restore(copy(policy.state()));
+        assertEquals(3.0, restoredPolicy.update(new double[] {-2.5, -6.5}, 0, new double[] {0.5, 1.5}, null,
+                newWeights), DELTA);
+        assertArrayEquals(new double[] {-4, -11}, newWeights, DELTA);
+    }
+
+    @Test
+    public void armijoBacktracksUntilSufficientDecrease() {
+        Dataset dataset = new DenseDataset(1, new double[] {10, 20, 30}, new double[] {21, 41, 61});
+        double[] weights = {1, 1};
+        double[] gradient = new double[2];
+        double costFunction = GradientDescent.costAndGradient(weights, dataset, gradient);
+        DoubleUnaryOperator lineCost = GradientDescent.lineCost(costFunction,
+                dataset.directionalSums(weights, gradient), dataset.size());
+
+        StepPolicy policy = StepPolicy.parse("armijo", 0.1, 0.9);
+        double[] newWeights = new double[2];
+        double step = policy.update(weights, costFunction, gradient, lineCost, newWeights);
+
+        double gradientSquare = GradientDescent.dotProduct(gradient, gradient);
+        assertTrue(step < 1.0);
+        assertEquals(Math.pow(0.5, Math.round(Math.log(step) / Math.log(0.5))), step, 0);
+        assertTrue(lineCost.applyAsDouble(step) <= costFunction - 1e-4 * step * gradientSquare);
+        assertTrue(lineCost.applyAsDouble(2 * step) > costFunction - 2e-4 * step * gradientSquare);
+        assertEquals(GradientDescent.costFunction(newWeights, dataset), lineCost.applyAsDouble(step),
+                1e-9 * costFunction);
+        assertTrue(GradientDescent.costFunction(newWeights, dataset) < costFunction);
+    }
+
+    @Test
+    public void armijoKeepsWeightsWithoutDecrease() {
+        StepPolicy policy = StepPolicy.parse("armijo", 0.1, 0.9);
+        double[] weights = {1, 2};
+        double[] newWeights = new double[2];
+
+        double step = policy.update(weights, 1.0, new double[] {1, 1}, s -> 2.0, newWeights);
+        assertEquals(0, step, 0);
+        assertArrayEquals(weights, newWeights, 0);
+    }
+
+    @Test
+    public void nesterovAddsMomentumOfDescendedWeights() {
+        StepPolicy policy = StepPolicy.parse("nesterov", 0.1, 0.5);
+        double[] newWeights = new double[1];
+
+        policy.update(new double[] {1}, 0, new double[] {2}, null, newWeights);
+        assertArrayEquals(new double[] {0.8 + 0.5 * (0.8 - 1)}, newWeights, DELTA);
+
+        policy.update(new double[] {0.7}, 0, new double[] {1}, null, newWeights);
+        assertArrayEquals(new double[] {0.6 + 0.5 * (0.6 - 0.8)}, newWeights, DELTA);
+    }
+
+    @Test
+    public void adamStepsByLearningRateInitially() {
+        StepPolicy policy = StepPolicy.parse("adam", 0.1, 0.9);
+        double[] newWeights = new double[2];
+
+        assertEquals(0.1, policy.update(new double[] {1, 1}, 0, new double[] {4, -0.5}, null, newWeights), 0);
+        assertArrayEquals(new double[] {0.9, 1.1}, newWeights, 1e-7);
+    }
+
+    @Test
+    public void restoredPoliciesContinueTheSameWay() {
+        for (String type : new String[] {"bb", "armijo", "nesterov", "adam"}) {
+            StepPolicy policy = StepPolicy.parse(type, 0.1, 0.5);
+            double[] newWeights = new double[2];
+            policy.update(new double[] {1, 1}, 2.0, new double[] {1, -1}, s -> 1.0 - s, newWeights);
+
+            StepPolicy restoredPolicy = StepPolicy.parse(type, 0.1, 0.5);
+            restoredPolicy.restore(copy(policy.state()));
+
+            double[] weights = newWeights.clone();
+            double[] gradient = {0.5, -0.25};
+            double[] expectedWeights = new double[2];
+            double[] restoredWeights = new double[2];
+            policy.update(weights, 1.0, gradient, s -> 0.5 - s, expectedWeights);
+            restoredPolicy.update(weights, 1.0, gradient, s -> 0.5 - s, restoredWeights);
+            assertArrayEquals(type, expectedWeights, restoredWeights, 0);
+        }
+    }
+
+    private static double[][] copy(double[][] state) {
+        double[][] copy = new double[state.length][];
+        for (int i = 0; i < state.length; i++) {
+            copy[i] = state[i].clone();
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,181 @@
+package ru.pokrasko.pgd.forkjoin;
+
+import ru.pokrasko.pgd.common.Dataset;
+import ru.pokrasko.pgd.common.GramStatistics;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+class ForkJoinDataset implements Dataset {
+    private final Dataset dataset;
+    private final ForkJoinPool pool;
+
+    private final Dataset[] partitions;
+    private final double[] partialCostFunctions;
+    private final double[][] partialGradients;
+
+    ForkJoinDataset(Dataset dataset, ForkJoinPool pool, int partitionsNumber) {
+        this.dataset = dataset;
+        this.pool = pool;
+
+        partitionsNumber = Math.max(1, Math.min(partitionsNumber, dataset.size()));
+        partitions = new Dataset[partitionsNumber];
+        for (int i = 0; i < partitionsNumber; i++) {
+            partitions[i] = dataset.subset((int) ((long) i * dataset.size() / partitionsNumber),
+                    (int) ((long) (i + 1) * dataset.size() / partitionsNumber));
+        }
+        partialCostFunctions = new double[partitionsNumber];
+        partialGradients = new double[partitionsNumber][dataset.dimensiality() + 1];
+    }
+
+    int partitionsNumber() {
+        return partitions.length;
+    }
+
+    GramStatistics gramStatistics() {
+        return pool.invoke(new GramStatisticsTask(0, partitions.length));
+    }
+
+    @Override
+    public int size() {
+        return dataset.size();
+    }
+
+    @Override
+    public int dimensiality() {
+        return dataset.dimensiality();
+    }
+
+    @Override
+    public double coord(int row, int index) {
+        return dataset.coord(row, index);
+    }
+
+    @Override
+    public double value(int row) {
+        return dataset.value(row);
+    }
+
+    @Override
+    public Dataset subset(int from, int to) {
+        return dataset.subset(from, to);
+    }
+
+    @Override
+    public double accumulate(double[] weights, double[] gradient) {
+        pool.invoke(new PartitionsTask(weights, 0, partitions.length));
+
+        for (int i = 0; i < gradient.length; i++) {
+            gradient[i] += partialGradients[0][i];
+        }
+        return partialCostFunctions[0];
+    }
+
+    @Override
+    public double accumulate(double[] weights, double[] gradient, int[] rows, int from, int to) {
+        return dataset.accumulate(weights, gradient, rows, from, to);
+    }
+
+    @Override
+    public void close() {
+        for (Dataset partition : partitions) {
+            partition.close();
+        }
+        dataset.close();
+    }
+
+    @Override
+    public double[] directionalSums(double[] weights, double[] direction) {
+        return pool.invoke(new DirectionalSumsTask(weights, direction, 0, partitions.length));
+    }
+
+    private class PartitionsTask extends RecursiveAction {
+        private final double[] weights;
+        private final int from;
+        private final int to;
+
+        PartitionsTask(double[] weights, int from, int to) {
+            this.weights = weights;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                Arrays.fill(partialGradients[from], 0.0);
+                partialCostFunctions[from] = partitions[from].accumulate(weights, partialGradients[from]);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new PartitionsTask(weights, from, middle), new PartitionsTask(weights, middle, to));
+
+            double[] gradient = partialGradients[from];
+            double[] otherGradient = partialGradients[middle];
+            for (int i = 0; i < gradient.length; i++) {
+                gradient[i] += otherGradient[i];
+            }
+            partialCostFunctions[from] += partialCostFunctions[middle];
+        }
+    }
+
+    private class DirectionalSumsTask extends RecursiveTask<double[]> {
+        private final double[] weights;
+        private final double[] direction;
+        private final int from;
+        private final int to;
+
+        DirectionalSumsTask(double[] weights, double[] direction, int from, int to) {
+            this.weights = weights;
+            this.direction = direction;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (to - from == 1) {
+                return partitions[from].directionalSums(weights, direction);
+            }
+
+            int middle = (from + to) >>> 1;
+            DirectionalSumsTask other = new DirectionalSumsTask(weights, direction, middle, to);
+            other.fork();
+            double[] sums = new DirectionalSumsTask(weights, direction, from, middle).compute();
+            double[] otherSums = other.join();
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] += otherSums[i];
+            }
+            return sums;
+        }
+    }
+
+    private class GramStatisticsTask extends RecursiveTask<GramStatistics> {
+        private final int from;
+        private final int to;
+
+        GramStatisticsTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected GramStatistics compute() {
+            if (to - from == 1) {
+                GramStatistics statistics = new GramStatistics(dataset.dimensiality());
+                statistics.add(partitions[from]);
+                return statistics;
+            }
+
+            int middle = (from + to) >>> 1;
+            GramStatisticsTask other = new GramStatisticsTask(middle, to);
+            other.fork();
+            GramStatistics statistics = new GramStatisticsTask(from, middle).compute();
+            statistics.merge(other.join());
+            return statistics;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package ru.pokrasko.pgd.forkjoin;
+
+import ru.pokrasko.pgd.common.Dataset;
+import ru.pokrasko.pgd.common.GramStatistics;
+import ru.pokrasko.pgd.singleflow.SingleFlowOptimizer;
+
+import java.util.concurrent.ForkJoinPool;
+
+public class ForkJoinOptimizer extends SingleFlowOptimizer {
+    public static final String THREADS_CONFIG_KEY = "threads";
+
+    private static final int PARTITIONS_BY_THREAD = 4;
+
+    private ForkJoinPool pool;
+    private ForkJoinDataset forkJoinDataset;
+    private int threadsNumber;
+    private int partitionsNumber;
+
+    @Override
+    protected Dataset prepareDataset(Dataset dataset) {
+        threadsNumber = config().getInteger(THREADS_CONFIG_KEY, Runtime.getRuntime().availableProcessors());
+        if (threadsNumber <= 0) {
+            throw new IllegalArgumentException("The threads number should be positive");
+        }
+
+        pool = new ForkJoinPool(threadsNumber);
+        forkJoinDataset = new ForkJoinDataset(dataset, pool, threadsNumber * PARTITIONS_BY_THREAD);
+        partitionsNumber = forkJoinDataset.partitionsNumber();
+        return forkJoinDataset;
+    }
+
+    @Override
+    protected GramStatistics gramStatistics(Dataset dataset) {
+        return forkJoinDataset.gramStatistics();
+    }
+
+    @Override
+    protected void printDetails() {
+        System.out.printf("%d threads and %d partitions were used\n", threadsNumber, partitionsNumber);
+    }
+
+    @Override
+    public void stop() throws Exception {
+        super.stop();
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package ru.pokrasko.pgd.generator;
+
+import ru.pokrasko.pgd.common.InputFileHeader;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+public class Converter {
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    private final String inputFilename;
+    private final String outputFilename;
+    private final boolean toFloat;
+
+    private Converter(String inputFilename, String outputFilename, boolean toFloat) {
+        this.inputFilename = inputFilename;
+        this.outputFilename = outputFilename;
+        this.toFloat = toFloat;
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 3 || !args[2].equals("--float") && !args[2].equals("--double")) {
+            usage();
+            return;
+        }
+
+        try {
+            new Converter(args[0], args[1], args[2].equals("--float")).convert();
+        } catch (FileNotFoundException e) {
+            System.err.println("Could not open a file: " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Could not convert the input file: " + e.getMessage());
+        }
+    }
+
+    private void convert() throws IOException {
+        long startTime = System.currentTimeMillis();
+
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(inputFilename), BUFFER_BYTES))) {
+            InputFileHeader header = InputFileHeader.read(input);
+            if (header.isSparse()) {
+                throw new IOException("sparse input files can't be converted");
+            }
+            if (header.isFloat() == toFloat) {
+                throw new IOException("the input file is already in " + (toFloat ? "single" : "double")
+                        + " precision");
+            }
+
+            try (DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(outputFilename), BUFFER_BYTES))) {
+                ByteBuffer outputHeader = new InputFileHeader(
+                        toFloat ? InputFileHeader.FLOAT_FORMAT : InputFileHeader.DENSE_FORMAT,
+                        header.size(), header.dimensiality(), 0).toBuffer();
+                output.write(outputHeader.array(), 0, outputHeader.limit());
+
+                long elementsNumber = (long) header.size() * (header.dimensiality() + 1);
+                for (long i = 0; i < elementsNumber; i++) {
+                    if (toFloat) {
+                        output.writeFloat((float) input.readDouble());
+                    } else {
+                        output.writeDouble(input.readFloat());
+                    }
+                }
+            }
+
+            System.out.printf("Conversion finished (%d ms)\n", System.currentTimeMillis() - startTime);
+            System.out.println("There are " + header.dimensiality() + " dimensions, " + header.size() + " points");
+        } catch (EOFException e) {
+            throw new IOException("the input file is shorter than its header says");
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Usage: converter <input-file> <output-file> --float");
+        System.err.println("       converter <input-file> <output-file> --double");
+    }
+}
@@ -1,11 +1,23 @@
 package ru.pokrasko.pgd.generator;
 
 import ru.pokrasko.pgd.common.GradientDescent;
+import ru.pokrasko.pgd.common.InputFileHeader;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 public class Generator {
@@ -13,6 +25,8 @@ public class Generator {
     private static final int MAX_DIMENSIALITY = 10;
     private static final double MAX_WEIGHT = 100.0;
     private static final double MAX_COORD = 100.0;
+    private static final int CHUNK_BYTES = 1 << 22;
+    private static final int SPARSE_ENTRY_BYTES = Integer.BYTES + Double.BYTES;
 
     private String generatedOutputFilename;
     private String generatedWeightsFilename;
@@ -21,9 +35,18 @@ public class Generator {
     private int dimensiality;
     private final double maxWeight;
     private final double maxCoord;
+    private final long seed;
+    private final double noise;
+    private final double sparsity;
+    private final int threadsNumber;
+    private final boolean sparse;
+    private final boolean floatFormat;
+    private long nonZerosNumber = -1;
 
     private Generator(String outputFilename, String weightsFilename,
-                     int size, int dimensiality, double maxWeight, double maxCoord)
+                     int size, int dimensiality, double maxWeight, double maxCoord,
+                     long seed, double noise, double sparsity, int threadsNumber, boolean sparse,
+                     boolean floatFormat)
             throws FileNotFoundException {
         this.generatedOutputFilename = outputFilename;
         this.generatedWeightsFilename = weightsFilename;
@@ -32,24 +55,81 @@ public class Generator {
         this.dimensiality = dimensiality;
         this.maxWeight = maxWeight;
         this.maxCoord = maxCoord;
+        this.seed = seed;
+        this.noise = noise;
+        this.sparsity = sparsity;
+        this.threadsNumber = threadsNumber;
+        this.sparse = sparse;
+        this.floatFormat = floatFormat;
     }
 
     public static void main(String[] args) {
-        if (args.length != 1 && args.length != 2 && args.length != 3 && args.length != 5 && args.length != 6
-                || args[0] == null || args.length > 1 && args[1] == null || args.length > 2 && args[2] == null
-                || args.length > 3 && args[3] == null || args.length > 4 && args[4] == null
-                || args.length > 5 && args[5] == null) {
+        List<String> positionalArgs = new ArrayList<>();
+        long seed = System.nanoTime();
+        double noise = 0.0;
+        double sparsity = 0.0;
+        int threadsNumber = Runtime.getRuntime().availableProcessors();
+        boolean sparse = false;
+        boolean floatFormat = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i] == null) {
+                    usage();
+                    return;
+                }
+                if (!args[i].startsWith("--")) {
+                    positionalArgs.add(args[i]);
+                    continue;
+                }
+                if (args[i].equals("--sparse")) {
+                    sparse = true;
+                    continue;
+                }
+                if (args[i].equals("--float")) {
+                    floatFormat = true;
+                    continue;
+                }
+                if (i + 1 == args.length || args[i + 1] == null) {
+                    usage();
+                    return;
+                }
+                switch (args[i]) {
+                    case "--seed":
+                        seed = Long.parseLong(args[++i]);
+                        break;
+                    case "--noise":
+                        noise = Double.parseDouble(args[++i]);
+                        break;
+                    case "--sparsity":
+                        sparsity = Double.parseDouble(args[++i]);
+                        break;
+                    case "--threads":
+                        threadsNumber = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        usage();
+                        return;
+                }
+            }
+        } catch (NumberFormatException e) {
             usage();
             return;
         }
-        int size = (args.length > 1) ? Integer.parseInt(args[1]) : SIZE;
-        int maxDimensiality = (args.length > 2) ? Integer.parseInt(args[2]) : MAX_DIMENSIALITY;
-        double maxWeight = (args.length > 3) ? Double.parseDouble(args[3]) : MAX_WEIGHT;
-        double maxCoord = (args.length > 4) ? Double.parseDouble(args[4]) : MAX_COORD;
-        String weightFilename = (args.length > 5) ? args[5] : null;
+        int argsNumber = positionalArgs.size();
+        if (argsNumber != 1 && argsNumber != 2 && argsNumber != 3 && argsNumber != 5 && argsNumber != 6
+                || noise < 0.0 || sparsity < 0.0 || sparsity > 1.0 || threadsNumber <= 0 || sparse && floatFormat) {
+            usage();
+            return;
+        }
+        int size = (argsNumber > 1) ? Integer.parseInt(positionalArgs.get(1)) : SIZE;
+        int maxDimensiality = (argsNumber > 2) ? Integer.parseInt(positionalArgs.get(2)) : MAX_DIMENSIALITY;
+        double maxWeight = (argsNumber > 3) ? Double.parseDouble(positionalArgs.get(3)) : MAX_WEIGHT;
+        double maxCoord = (argsNumber > 4) ? Double.parseDouble(positionalArgs.get(4)) : MAX_COORD;
+        String weightFilename = (argsNumber > 5) ? positionalArgs.get(5) : null;
 
         try {
-            new Generator(args[0], weightFilename, size, maxDimensiality, maxWeight, maxCoord).generate();
+            new Generator(positionalArgs.get(0), weightFilename, size, maxDimensiality, maxWeight, maxCoord,
+                    seed, noise, sparsity, threadsNumber, sparse, floatFormat).generate();
         } catch (FileNotFoundException e) {
             System.err.println("Could not create a file: " + e.getMessage());
         } catch (IOException e) {
@@ -60,54 +140,203 @@ public class Generator {
     private void generate() throws IOException {
         long startTime = System.currentTimeMillis();
 
-        Random random = new Random();
+        SplittableRandom random = new SplittableRandom(seed);
         if (dimensiality == -1) {
             dimensiality = random.nextInt(MAX_DIMENSIALITY - 1) + 1;
         }
-        List<Double> weights = random.doubles(dimensiality + 1, -maxWeight, maxWeight)
-                .mapToObj(x -> x).collect(Collectors.toList());
+        double[] weights = random.doubles(dimensiality + 1, -maxWeight, maxWeight).toArray();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadsNumber);
+        try (FileChannel channel = FileChannel.open(Paths.get(generatedOutputFilename), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (sparse) {
+                writeSparsePoints(channel, executor, random, weights);
+            } else {
+                writeDensePoints(channel, executor, random, weights);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Generating was interrupted");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException
+                    ? (IOException) e.getCause()
+                    : new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
 
-        try (DataOutputStream stream =
-                     new DataOutputStream(new BufferedOutputStream(new FileOutputStream(generatedOutputFilename)))) {
-            stream.writeInt(size);
-            stream.writeInt(dimensiality);
+        printInfo(weights, startTime);
+    }
+
+    private void writeDensePoints(FileChannel channel, ExecutorService executor, SplittableRandom random,
+                                  double[] weights) throws IOException, InterruptedException, ExecutionException {
+        InputFileHeader fileHeader = new InputFileHeader(
+                floatFormat ? InputFileHeader.FLOAT_FORMAT : InputFileHeader.DENSE_FORMAT, size, dimensiality, 0);
+        int rowBytes = (int) fileHeader.rowBytes();
+        int chunkSize = Math.max(1, CHUNK_BYTES / rowBytes);
+        int chunksNumber = (int) (((long) size + chunkSize - 1) / chunkSize);
+
+        ByteBuffer header = fileHeader.toBuffer();
+        int headerBytes = header.remaining();
+        writeFully(channel, header, 0);
+
+        ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() ->
+                ByteBuffer.allocateDirect(chunkSize * rowBytes));
+        List<Future<Void>> chunks = new ArrayList<>(chunksNumber);
+        for (int i = 0; i < chunksNumber; i++) {
+            int from = i * chunkSize;
+            int to = (int) Math.min((long) from + chunkSize, size);
+            SplittableRandom chunkRandom = random.split();
+            chunks.add(executor.submit(() -> {
+                ByteBuffer buffer = buffers.get();
+                buffer.clear();
+                generateDenseChunk(chunkRandom, weights, to - from, buffer);
+                buffer.flip();
+                writeFully(channel, buffer, headerBytes + (long) from * rowBytes);
+                return null;
+            }));
+        }
+        for (Future<Void> chunk : chunks) {
+            chunk.get();
+        }
+    }
 
-            for (int i = 0; i < size; i++) {
-                List<Double> coords = new ArrayList<>(dimensiality);
-                for (int j = 0; j < dimensiality; j++) {
-                    double coord = (random.nextDouble() - 0.5) * 2 * maxCoord;
-                    coords.add(coord);
-                    stream.writeDouble(coord);
+    private void generateDenseChunk(SplittableRandom random, double[] weights, int rowsNumber, ByteBuffer buffer) {
+        GaussianSampler gaussian = new GaussianSampler(random);
+        double[] coords = new double[dimensiality];
+        for (int i = 0; i < rowsNumber; i++) {
+            for (int j = 0; j < dimensiality; j++) {
+                coords[j] = sparsity > 0.0 && random.nextDouble() < sparsity
+                        ? 0.0
+                        : (random.nextDouble() - 0.5) * 2 * maxCoord;
+                if (floatFormat) {
+                    coords[j] = (float) coords[j];
+                    buffer.putFloat((float) coords[j]);
+                } else {
+                    buffer.putDouble(coords[j]);
                 }
-                stream.writeDouble(getValue(weights, coords));
             }
 
-            printInfo(weights, startTime);
+            double value = GradientDescent.linearValue(weights, coords, 0);
+            if (noise > 0.0) {
+                value += noise * gaussian.next();
+            }
+            if (floatFormat) {
+                buffer.putFloat((float) value);
+            } else {
+                buffer.putDouble(value);
+            }
         }
     }
 
-    private void printInfo(List<Double> weights, long startTime) {
+    private void writeSparsePoints(FileChannel channel, ExecutorService executor, SplittableRandom random,
+                                   double[] weights) throws IOException, InterruptedException, ExecutionException {
+        double expectedRowBytes = Integer.BYTES + Double.BYTES + dimensiality * (1.0 - sparsity) * SPARSE_ENTRY_BYTES;
+        int chunkSize = (int) Math.max(1, Math.min(CHUNK_BYTES / expectedRowBytes, Integer.MAX_VALUE));
+        int chunksNumber = (int) (((long) size + chunkSize - 1) / chunkSize);
+
+        long position = new InputFileHeader(InputFileHeader.SPARSE_FORMAT, size, dimensiality, 0).bytes();
+        nonZerosNumber = 0;
+        Deque<Future<ByteBuffer>> pendingChunks = new ArrayDeque<>();
+        int submittedNumber = 0;
+        while (submittedNumber < chunksNumber || !pendingChunks.isEmpty()) {
+            while (submittedNumber < chunksNumber && pendingChunks.size() < 2 * threadsNumber) {
+                int rowsNumber = (int) Math.min(chunkSize, size - (long) submittedNumber * chunkSize);
+                SplittableRandom chunkRandom = random.split();
+                pendingChunks.add(executor.submit(() -> generateSparseChunk(chunkRandom, weights, rowsNumber)));
+                submittedNumber++;
+            }
+
+            ByteBuffer chunk = pendingChunks.remove().get();
+            nonZerosNumber += chunk.getLong();
+            int chunkBytes = chunk.remaining();
+            writeFully(channel, chunk, position);
+            position += chunkBytes;
+        }
+
+        writeFully(channel, new InputFileHeader(InputFileHeader.SPARSE_FORMAT, size, dimensiality, nonZerosNumber)
+                .toBuffer(), 0);
+    }
+
+    private ByteBuffer generateSparseChunk(SplittableRandom random, double[] weights, int rowsNumber) {
+        GaussianSampler gaussian = new GaussianSampler(random);
+        double logSparsity = Math.log(sparsity);
+        int[] columns = new int[dimensiality];
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + (int) Math.min(CHUNK_BYTES * 2L, Integer.MAX_VALUE));
+        buffer.putLong(0);
+        long chunkNonZerosNumber = 0;
+        for (int i = 0; i < rowsNumber; i++) {
+            int rowNonZerosNumber = 0;
+            if (sparsity < 1.0) {
+                long column = -1;
+                while (true) {
+                    column += sparsity > 0.0
+                            ? 1 + (long) Math.floor(Math.log(1.0 - random.nextDouble()) / logSparsity)
+                            : 1;
+                    if (column >= dimensiality) {
+                        break;
+                    }
+                    columns[rowNonZerosNumber++] = (int) column;
+                }
+            }
+
+            int rowBytes = Integer.BYTES + rowNonZerosNumber * SPARSE_ENTRY_BYTES + Double.BYTES;
+            if (buffer.remaining() < rowBytes) {
+                ByteBuffer grownBuffer = ByteBuffer.allocate((int) Math.min(
+                        Math.max(buffer.capacity() * 2L, (long) buffer.position() + rowBytes), Integer.MAX_VALUE));
+                buffer.flip();
+                grownBuffer.put(buffer);
+                buffer = grownBuffer;
+            }
+
+            double value = weights[dimensiality];
+            buffer.putInt(rowNonZerosNumber);
+            for (int j = 0; j < rowNonZerosNumber; j++) {
+                double coord = (random.nextDouble() - 0.5) * 2 * maxCoord;
+                buffer.putInt(columns[j]).putDouble(coord);
+                value += weights[columns[j]] * coord;
+            }
+            if (noise > 0.0) {
+                value += noise * gaussian.next();
+            }
+            buffer.putDouble(value);
+            chunkNonZerosNumber += rowNonZerosNumber;
+        }
+
+        buffer.putLong(0, chunkNonZerosNumber);
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private void printInfo(double[] weights, long startTime) {
         System.out.printf("Input generating finished (%d ms)\n", System.currentTimeMillis() - startTime);
         System.out.println();
 
-        System.out.println("There are " + dimensiality + " dimensions, " + SIZE + " points");
+        System.out.println("There are " + dimensiality + " dimensions, " + size + " points");
+        if (sparse) {
+            System.out.println("There are " + nonZerosNumber + " non-zero coordinates");
+        }
+        System.out.println("Seed: " + seed);
 
         if (generatedWeightsFilename != null && printWeightsToFile(weights)) {
             System.out.printf("Weights are written into file \"%s\"\n", generatedWeightsFilename);
         } else {
-            double constantWeight = weights.remove(weights.size() - 1);
-            System.out.println("Features weights: "
-                    + weights.stream().map(Object::toString).collect(Collectors.joining(" ")));
-            System.out.println("Constant weight: " + constantWeight);
+            GradientDescent.printWeightsToSystemOut(weights);
         }
 
         System.out.println();
         System.out.println();
     }
 
-    private boolean printWeightsToFile(List<Double> weights) {
+    private boolean printWeightsToFile(double[] weights) {
         try (PrintWriter writer = new PrintWriter(generatedWeightsFilename)) {
-            writer.print(weights.stream().map(Object::toString).collect(Collectors.joining(" ")));
+            writer.print(Arrays.stream(weights).mapToObj(Double::toString).collect(Collectors.joining(" ")));
             if (writer.checkError()) {
                 System.err.printf("Could not write weights to file \"%s\"\n", generatedWeightsFilename);
                 return false;
@@ -120,20 +349,37 @@ public class Generator {
         }
     }
 
-    private static double getValue(List<Double> weights, List<Double> coords) {
-        assert weights.size() == coords.size() + 1;
-
-        coords.add(1.0);
-        double result = GradientDescent.dotProduct(weights, coords);
-        coords.remove(coords.size() - 1);
-        return result;
-    }
-
     private static void usage() {
         System.err.println("Usage: generator <input-file>");
         System.err.println("       generator <input-file> <point-amount>");
         System.err.println("       generator <input-file> <point-amount> <max-dimensiality>");
         System.err.println("       generator <input-file> <point-amount> <max-dimensiality> <max-absolute-weight>" +
                 " <max-absolute-coord>");
+        System.err.println("       generator <input-file> <point-amount> <max-dimensiality> <max-absolute-weight>" +
+                " <max-absolute-coord> <weights-file>");
+        System.err.println("Options: --seed <seed> --noise <standard-deviation> --sparsity <zero-coord-probability>" +
+                " --threads <threads-number> --sparse --float");
+    }
+
+    private static class GaussianSampler {
+        private final SplittableRandom random;
+        private double spare = Double.NaN;
+
+        GaussianSampler(SplittableRandom random) {
+            this.random = random;
+        }
+
+        double next() {
+            if (!Double.isNaN(spare)) {
+                double result = spare;
+                spare = Double.NaN;
+                return result;
+            }
+
+            double radius = Math.sqrt(-2 * Math.log(1.0 - random.nextDouble()));
+            double angle = 2 * Math.PI * random.nextDouble();
+            spare = radius * Math.sin(angle);
+            return radius * Math.cos(angle);
+        }
     }
 }
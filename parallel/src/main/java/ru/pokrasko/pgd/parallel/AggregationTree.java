@@ -0,0 +1,76 @@
+package ru.pokrasko.pgd.parallel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class AggregationTree {
+    private final int fanIn;
+    private final int[] levelSizes;
+
+    private AggregationTree(int slavesNumber, int fanIn) {
+        this.fanIn = fanIn;
+
+        List<Integer> sizes = new ArrayList<>();
+        int size = slavesNumber;
+        sizes.add(size);
+        while (size > fanIn) {
+            size = (size + fanIn - 1) / fanIn;
+            sizes.add(size);
+        }
+        levelSizes = sizes.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    static AggregationTree build(int slavesNumber, Integer fanIn) {
+        return fanIn != null && slavesNumber > fanIn ? new AggregationTree(slavesNumber, fanIn) : null;
+    }
+
+    int fanIn() {
+        return fanIn;
+    }
+
+    int topLevel() {
+        return levelSizes.length - 1;
+    }
+
+    int levelSize(int level) {
+        return levelSizes[level];
+    }
+
+    int firstChild(int index) {
+        return index * fanIn;
+    }
+
+    int childrenNumber(int level, int index) {
+        return Math.min(fanIn, levelSizes[level - 1] - index * fanIn);
+    }
+
+    int hostedLevels(int slaveId) {
+        int levels = 0;
+        while (levels < topLevel() && slaveId % fanIn == 0) {
+            slaveId /= fanIn;
+            levels++;
+        }
+        return levels;
+    }
+
+    int indexOf(int slaveId, int level) {
+        for (int i = 0; i < level; i++) {
+            slaveId /= fanIn;
+        }
+        return slaveId;
+    }
+
+    String sumsAddress(int level, int index) {
+        return ParallelMainVerticle.LOCAL_SUMS_MESSAGE_ADDRESS + "." + level + "." + index;
+    }
+
+    String parentSumsAddress(int level, int index) {
+        return level == topLevel()
+                ? ParallelMainVerticle.LOCAL_SUMS_MESSAGE_ADDRESS
+                : sumsAddress(level + 1, index / fanIn);
+    }
+
+    String weightsAddress(int level, int index) {
+        return ParallelSlaveVerticle.WEIGHTS_MESSAGE_ADDRESS + "." + level + "." + index;
+    }
+}
@@ -0,0 +1,178 @@
+package ru.pokrasko.pgd.parallel;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.util.Arrays;
+
+class CompressedVector {
+    private static final byte INT8_MAX = Byte.MAX_VALUE;
+
+    final Compression compression;
+    final int length;
+    final int[] indices;
+    final double[] values;
+    final short[] halves;
+    final byte[] bytes;
+    final double scale;
+
+    private CompressedVector(Compression compression, int length, int[] indices, double[] values, short[] halves,
+                             byte[] bytes, double scale) {
+        this.compression = compression;
+        this.length = length;
+        this.indices = indices;
+        this.values = values;
+        this.halves = halves;
+        this.bytes = bytes;
+        this.scale = scale;
+    }
+
+    static CompressedVector compress(Compression compression, double[] vector, int topK) {
+        switch (compression) {
+            case TOP_K:
+                return compressTopK(vector, Math.min(topK, vector.length));
+            case BFLOAT16:
+                short[] halves = new short[vector.length];
+                for (int i = 0; i < vector.length; i++) {
+                    halves[i] = toBfloat16(vector[i]);
+                }
+                return new CompressedVector(compression, vector.length, null, null, halves, null, 0);
+            case INT8:
+                double maxMagnitude = 0;
+                for (double value : vector) {
+                    maxMagnitude = Math.max(maxMagnitude, Math.abs(value));
+                }
+                double scale = maxMagnitude / INT8_MAX;
+                byte[] bytes = new byte[vector.length];
+                if (scale > 0) {
+                    for (int i = 0; i < vector.length; i++) {
+                        bytes[i] = (byte) Math.round(vector[i] / scale);
+                    }
+                }
+                return new CompressedVector(compression, vector.length, null, null, null, bytes, scale);
+            default:
+                throw new IllegalArgumentException("Vectors can't be compressed with " + compression);
+        }
+    }
+
+    private static CompressedVector compressTopK(double[] vector, int topK) {
+        double[] magnitudes = new double[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            magnitudes[i] = Math.abs(vector[i]);
+        }
+        Arrays.sort(magnitudes);
+        int thresholdIndex = vector.length - topK;
+        double threshold = magnitudes[thresholdIndex];
+        int equalNumber = 0;
+        for (int i = thresholdIndex; i < vector.length && magnitudes[i] == threshold; i++) {
+            equalNumber++;
+        }
+
+        int[] indices = new int[topK];
+        double[] values = new double[topK];
+        int number = 0;
+        for (int i = 0; i < vector.length && number < topK; i++) {
+            double magnitude = Math.abs(vector[i]);
+            if (magnitude > threshold || magnitude == threshold && equalNumber-- > 0) {
+                indices[number] = i;
+                values[number++] = vector[i];
+            }
+        }
+        return new CompressedVector(Compression.TOP_K, vector.length, indices, values, null, null, 0);
+    }
+
+    private static short toBfloat16(double value) {
+        int bits = Float.floatToIntBits((float) value);
+        return (short) ((bits + 0x7FFF + ((bits >>> 16) & 1)) >>> 16);
+    }
+
+    private static double fromBfloat16(short half) {
+        return Float.intBitsToFloat(half << 16);
+    }
+
+    void addTo(double[] target) {
+        switch (compression) {
+            case TOP_K:
+                for (int i = 0; i < indices.length; i++) {
+                    target[indices[i]] += values[i];
+                }
+                break;
+            case BFLOAT16:
+                for (int i = 0; i < length; i++) {
+                    target[i] += fromBfloat16(halves[i]);
+                }
+                break;
+            default:
+                for (int i = 0; i < length; i++) {
+                    target[i] += bytes[i] * scale;
+                }
+        }
+    }
+
+    double[] decode() {
+        double[] vector = new double[length];
+        addTo(vector);
+        return vector;
+    }
+
+    int encodedLength() {
+        switch (compression) {
+            case TOP_K:
+                return 3 * Integer.BYTES + indices.length * (Integer.BYTES + Double.BYTES);
+            case BFLOAT16:
+                return 2 * Integer.BYTES + length * Short.BYTES;
+            default:
+                return 2 * Integer.BYTES + Double.BYTES + length;
+        }
+    }
+
+    void encode(Buffer buffer) {
+        buffer.appendInt(compression.ordinal());
+        buffer.appendInt(length);
+        switch (compression) {
+            case TOP_K:
+                buffer.appendInt(indices.length);
+                for (int i = 0; i < indices.length; i++) {
+                    buffer.appendInt(indices[i]);
+                    buffer.appendDouble(values[i]);
+                }
+                break;
+            case BFLOAT16:
+                for (short half : halves) {
+                    buffer.appendShort(half);
+                }
+                break;
+            default:
+                buffer.appendDouble(scale);
+                buffer.appendBytes(bytes);
+        }
+    }
+
+    static CompressedVector decode(int position, Buffer buffer) {
+        Compression compression = Compression.values()[buffer.getInt(position)];
+        int length = buffer.getInt(position + Integer.BYTES);
+        position += 2 * Integer.BYTES;
+        switch (compression) {
+            case TOP_K:
+                int number = buffer.getInt(position);
+                position += Integer.BYTES;
+                int[] indices = new int[number];
+                double[] values = new double[number];
+                for (int i = 0; i < number; i++) {
+                    indices[i] = buffer.getInt(position);
+                    values[i] = buffer.getDouble(position + Integer.BYTES);
+                    position += Integer.BYTES + Double.BYTES;
+                }
+                return new CompressedVector(compression, length, indices, values, null, null, 0);
+            case BFLOAT16:
+                short[] halves = new short[length];
+                for (int i = 0; i < length; i++) {
+                    halves[i] = buffer.getShort(position + i * Short.BYTES);
+                }
+                return new CompressedVector(compression, length, null, null, halves, null, 0);
+            default:
+                double scale = buffer.getDouble(position);
+                byte[] bytes = buffer.getBytes(position + Double.BYTES, position + Double.BYTES + length);
+                return new CompressedVector(compression, length, null, null, null, bytes, scale);
+        }
+    }
+}
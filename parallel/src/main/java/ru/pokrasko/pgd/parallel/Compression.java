@@ -0,0 +1,29 @@
+package ru.pokrasko.pgd.parallel;
+
+enum Compression {
+    NONE("none"), TOP_K("topK"), BFLOAT16("bfloat16"), INT8("int8");
+
+    private final String name;
+
+    Compression(String name) {
+        this.name = name;
+    }
+
+    static Compression parse(String name) {
+        for (Compression compression : values()) {
+            if (compression.name.equals(name)) {
+                return compression;
+            }
+        }
+        throw new IllegalArgumentException("Unknown compression \"" + name + "\"");
+    }
+
+    static int defaultTopK(int length) {
+        return Math.max(1, length / 10);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,47 @@
+package ru.pokrasko.pgd.parallel;
+
+import com.codahale.metrics.Counter;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+import ru.pokrasko.pgd.common.OptimizationMetrics;
+
+abstract class CountingMessageCodec<T> implements MessageCodec<T, T> {
+    private final Counter bytesWritten;
+    private final Counter bytesRead;
+
+    CountingMessageCodec(OptimizationMetrics metrics) {
+        bytesWritten = metrics != null ? metrics.bytesWritten() : null;
+        bytesRead = metrics != null ? metrics.bytesRead() : null;
+    }
+
+    @Override
+    public void encodeToWire(Buffer buffer, T message) {
+        int start = buffer.length();
+        encode(buffer, message);
+        if (bytesWritten != null) {
+            bytesWritten.inc(buffer.length() - start);
+        }
+    }
+
+    @Override
+    public T decodeFromWire(int position, Buffer buffer) {
+        if (bytesRead != null) {
+            bytesRead.inc(buffer.length() - position);
+        }
+        return decode(position, buffer);
+    }
+
+    @Override
+    public T transform(T message) {
+        return message;
+    }
+
+    @Override
+    public byte systemCodecID() {
+        return -1;
+    }
+
+    abstract void encode(Buffer buffer, T message);
+
+    abstract T decode(int position, Buffer buffer);
+}
@@ -0,0 +1,11 @@
+package ru.pokrasko.pgd.parallel;
+
+class DirectionMessage {
+    int version;
+    double[] direction;
+
+    DirectionMessage(int version, double[] direction) {
+        this.version = version;
+        this.direction = direction;
+    }
+}
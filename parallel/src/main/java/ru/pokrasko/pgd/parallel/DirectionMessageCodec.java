@@ -0,0 +1,27 @@
+package ru.pokrasko.pgd.parallel;
+
+import io.vertx.core.buffer.Buffer;
+import ru.pokrasko.pgd.common.OptimizationMetrics;
+
+class DirectionMessageCodec extends CountingMessageCodec<DirectionMessage> {
+    DirectionMessageCodec(OptimizationMetrics metrics) {
+        super(metrics);
+    }
+
+    @Override
+    void encode(Buffer buffer, DirectionMessage message) {
+        buffer.appendInt(message.version);
+        WeightsMessageCodec.encodeDoubles(buffer, message.direction);
+    }
+
+    @Override
+    DirectionMessage decode(int position, Buffer buffer) {
+        int version = buffer.getInt(position);
+        return new DirectionMessage(version, WeightsMessageCodec.decodeDoubles(position + Integer.BYTES, buffer));
+    }
+
+    @Override
+    public String name() {
+        return "direction";
+    }
+}
@@ -0,0 +1,13 @@
+package ru.pokrasko.pgd.parallel;
+
+class DirectionalSumsMessage {
+    int slaveId;
+    int version;
+    double[] sums;
+
+    DirectionalSumsMessage(int slaveId, int version, double[] sums) {
+        this.slaveId = slaveId;
+        this.version = version;
+        this.sums = sums;
+    }
+}
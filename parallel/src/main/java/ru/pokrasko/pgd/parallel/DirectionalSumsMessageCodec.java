@@ -0,0 +1,30 @@
+package ru.pokrasko.pgd.parallel;
+
+import io.vertx.core.buffer.Buffer;
+import ru.pokrasko.pgd.common.OptimizationMetrics;
+
+class DirectionalSumsMessageCodec extends CountingMessageCodec<DirectionalSumsMessage> {
+    DirectionalSumsMessageCodec(OptimizationMetrics metrics) {
+        super(metrics);
+    }
+
+    @Override
+    void encode(Buffer buffer, DirectionalSumsMessage message) {
+        buffer.appendInt(message.slaveId);
+        buffer.appendInt(message.version);
+        WeightsMessageCodec.encodeDoubles(buffer, message.sums);
+    }
+
+    @Override
+    DirectionalSumsMessage decode(int position, Buffer buffer) {
+        int slaveId = buffer.getInt(position);
+        int version = buffer.getInt(position + Integer.BYTES);
+        double[] sums = WeightsMessageCodec.decodeDoubles(position + 2 * Integer.BYTES, buffer);
+        return new DirectionalSumsMessage(slaveId, version, sums);
+    }
+
+    @Override
+    public String name() {
+        return "directional-sums";
+    }
+}
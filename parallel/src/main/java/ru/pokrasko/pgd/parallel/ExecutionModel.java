@@ -0,0 +1,25 @@
+package ru.pokrasko.pgd.parallel;
+
+enum ExecutionModel {
+    EVENT_LOOP("eventLoop"), WORKER("worker"), BLOCKING("blocking");
+
+    private final String name;
+
+    ExecutionModel(String name) {
+        this.name = name;
+    }
+
+    static ExecutionModel parse(String name) {
+        for (ExecutionModel execution : values()) {
+            if (execution.name.equals(name)) {
+                return execution;
+            }
+        }
+        throw new IllegalArgumentException("Unknown execution model \"" + name + "\"");
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,13 @@
+package ru.pokrasko.pgd.parallel;
+
+import ru.pokrasko.pgd.common.GramStatistics;
+
+class GramStatisticsMessage {
+    int slaveId;
+    GramStatistics statistics;
+
+    GramStatisticsMessage(int slaveId, GramStatistics statistics) {
+        this.slaveId = slaveId;
+        this.statistics = statistics;
+    }
+}
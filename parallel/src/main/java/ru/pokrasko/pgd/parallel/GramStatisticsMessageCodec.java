@@ -0,0 +1,37 @@
+package ru.pokrasko.pgd.parallel;
+
+import io.vertx.core.buffer.Buffer;
+import ru.pokrasko.pgd.common.GramStatistics;
+import ru.pokrasko.pgd.common.OptimizationMetrics;
+
+class GramStatisticsMessageCodec extends CountingMessageCodec<GramStatisticsMessage> {
+    GramStatisticsMessageCodec(OptimizationMetrics metrics) {
+        super(metrics);
+    }
+
+    @Override
+    void encode(Buffer buffer, GramStatisticsMessage message) {
+        buffer.appendInt(message.slaveId);
+        buffer.appendInt(message.statistics.dimensiality());
+        buffer.appendLong(message.statistics.size());
+        WeightsMessageCodec.encodeDoubles(buffer, message.statistics.means());
+        WeightsMessageCodec.encodeDoubles(buffer, message.statistics.scatter());
+    }
+
+    @Override
+    GramStatisticsMessage decode(int position, Buffer buffer) {
+        int slaveId = buffer.getInt(position);
+        int dimensiality = buffer.getInt(position + Integer.BYTES);
+        long size = buffer.getLong(position + 2 * Integer.BYTES);
+        int meansPosition = position + 2 * Integer.BYTES + Long.BYTES;
+        double[] means = WeightsMessageCodec.decodeDoubles(meansPosition, buffer);
+        double[] scatter = WeightsMessageCodec.decodeDoubles(
+                meansPosition + Integer.BYTES + means.length * Double.BYTES, buffer);
+        return new GramStatisticsMessage(slaveId, new GramStatistics(dimensiality, size, means, scatter));
+    }
+
+    @Override
+    public String name() {
+        return "gram-statistics";
+    }
+}
@@ -0,0 +1,21 @@
+package ru.pokrasko.pgd.parallel;
+
+import io.vertx.core.buffer.Buffer;
+
+public class LocalSumsBenchmarkSupport {
+    private final LocalSumsMessageCodec codec = new LocalSumsMessageCodec(null);
+    private final LocalSumsMessage message;
+
+    public LocalSumsBenchmarkSupport(double localCostFunction, double[] localGradient, int pointsNumber,
+                                     long computeTime) {
+        message = new LocalSumsMessage(0, 0, localCostFunction, localGradient, pointsNumber, computeTime);
+    }
+
+    public void encode(Buffer buffer) {
+        codec.encodeToWire(buffer, message);
+    }
+
+    public Object decode(int position, Buffer buffer) {
+        return codec.decodeFromWire(position, buffer);
+    }
+}
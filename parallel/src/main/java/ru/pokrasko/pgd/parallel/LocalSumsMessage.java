@@ -1,36 +1,41 @@
 package ru.pokrasko.pgd.parallel;
 
-import io.vertx.core.json.JsonArray;
-import io.vertx.core.json.JsonObject;
-
-import java.util.List;
-
 class LocalSumsMessage {
-    Integer slaveId;
-    Double localCostFunction;
-    List<Double> localGradient;
+    int slaveId;
+    int version;
+    double localCostFunction;
+    double[] localGradient;
+    CompressedVector compressedGradient;
+    int pointsNumber;
+    long computeTime;
 
-    LocalSumsMessage(int slaveId, double localCostFunction, List<Double> localGradient) {
+    LocalSumsMessage(int slaveId, int version, double localCostFunction, double[] localGradient, int pointsNumber,
+                     long computeTime) {
         this.slaveId = slaveId;
+        this.version = version;
         this.localCostFunction = localCostFunction;
         this.localGradient = localGradient;
+        this.pointsNumber = pointsNumber;
+        this.computeTime = computeTime;
     }
 
-    LocalSumsMessage(JsonObject from) {
-        this.slaveId = from.getInteger("slaveId");
-        this.localCostFunction = from.getDouble("localCostFunction");
-        this.localGradient = (List<Double>) from.getJsonArray("localGradient").getList();
+    LocalSumsMessage(int slaveId, int version, double localCostFunction, CompressedVector compressedGradient,
+                     int pointsNumber, long computeTime) {
+        this(slaveId, version, localCostFunction, (double[]) null, pointsNumber, computeTime);
+        this.compressedGradient = compressedGradient;
+    }
 
-        if (this.slaveId == null || this.localCostFunction == null || this.localGradient == null) {
-            throw new NullPointerException("local-sums-message");
-        }
+    int gradientLength() {
+        return compressedGradient != null ? compressedGradient.length : localGradient.length;
     }
 
-    JsonObject toJSON() {
-        JsonObject json = new JsonObject();
-        json.put("slaveId", slaveId);
-        json.put("localCostFunction", localCostFunction);
-        json.put("localGradient", new JsonArray(localGradient));
-        return json;
+    void addGradientTo(double[] sum) {
+        if (compressedGradient != null) {
+            compressedGradient.addTo(sum);
+            return;
+        }
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] += localGradient[i];
+        }
     }
 }
@@ -0,0 +1,47 @@
+package ru.pokrasko.pgd.parallel;
+
+import io.vertx.core.buffer.Buffer;
+import ru.pokrasko.pgd.common.OptimizationMetrics;
+
+class LocalSumsMessageCodec extends CountingMessageCodec<LocalSumsMessage> {
+    LocalSumsMessageCodec(OptimizationMetrics metrics) {
+        super(metrics);
+    }
+
+    @Override
+    void encode(Buffer buffer, LocalSumsMessage message) {
+        buffer.appendInt(message.slaveId);
+        buffer.appendInt(message.version);
+        buffer.appendDouble(message.localCostFunction);
+        buffer.appendInt(message.pointsNumber);
+        buffer.appendLong(message.computeTime);
+        if (message.compressedGradient != null) {
+            buffer.appendByte((byte) 1);
+            message.compressedGradient.encode(buffer);
+        } else {
+            buffer.appendByte((byte) 0);
+            WeightsMessageCodec.encodeDoubles(buffer, message.localGradient);
+        }
+    }
+
+    @Override
+    LocalSumsMessage decode(int position, Buffer buffer) {
+        int slaveId = buffer.getInt(position);
+        int version = buffer.getInt(position + Integer.BYTES);
+        double localCostFunction = buffer.getDouble(position + 2 * Integer.BYTES);
+        int pointsNumber = buffer.getInt(position + 2 * Integer.BYTES + Double.BYTES);
+        long computeTime = buffer.getLong(position + 3 * Integer.BYTES + Double.BYTES);
+        position += 3 * Integer.BYTES + Double.BYTES + Long.BYTES;
+        if (buffer.getByte(position) != 0) {
+            return new LocalSumsMessage(slaveId, version, localCostFunction,
+                    CompressedVector.decode(position + 1, buffer), pointsNumber, computeTime);
+        }
+        double[] localGradient = WeightsMessageCodec.decodeDoubles(position + 1, buffer);
+        return new LocalSumsMessage(slaveId, version, localCostFunction, localGradient, pointsNumber, computeTime);
+    }
+
+    @Override
+    public String name() {
+        return "local-sums";
+    }
+}
@@ -0,0 +1,133 @@
+package ru.pokrasko.pgd.parallel;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.MessageConsumer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+class ParallelAggregatorVerticle extends AbstractVerticle {
+    private final AggregationTree tree;
+    private final int level;
+    private final int index;
+    private final int firstChild;
+    private final boolean[] received;
+
+    private int receivedNumber;
+    private int version;
+    private double costFunctionSum;
+    private double[] gradientSum;
+    private int pointsNumber;
+    private long computeTime;
+
+    private ParallelAggregatorVerticle(AggregationTree tree, int level, int index) {
+        this.tree = tree;
+        this.level = level;
+        this.index = index;
+        this.firstChild = tree.firstChild(index);
+        this.received = new boolean[tree.childrenNumber(level, index)];
+    }
+
+    static Future<Void> deployAll(Vertx vertx, AggregationTree tree) {
+        List<Future> deployments = new ArrayList<>();
+        for (int level = 1; level <= tree.topLevel(); level++) {
+            for (int index = 0; index < tree.levelSize(level); index++) {
+                deployments.add(deploy(vertx, tree, level, index));
+            }
+        }
+        return all(deployments);
+    }
+
+    static Future<Void> deployHosted(Vertx vertx, AggregationTree tree, int slaveId) {
+        List<Future> deployments = new ArrayList<>();
+        for (int level = 1; level <= tree.hostedLevels(slaveId); level++) {
+            deployments.add(deploy(vertx, tree, level, tree.indexOf(slaveId, level)));
+        }
+        return all(deployments);
+    }
+
+    private static Future<String> deploy(Vertx vertx, AggregationTree tree, int level, int index) {
+        Future<String> deployment = Future.future();
+        vertx.deployVerticle(new ParallelAggregatorVerticle(tree, level, index), deployment.completer());
+        return deployment;
+    }
+
+    private static Future<Void> all(List<Future> futures) {
+        Future<Void> future = Future.future();
+        if (futures.isEmpty()) {
+            future.complete();
+            return future;
+        }
+        CompositeFuture.all(futures).setHandler(ar -> {
+            if (ar.succeeded()) {
+                future.complete();
+            } else {
+                future.fail(ar.cause());
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public void start(Future<Void> future) throws Exception {
+        EventBus eventBus = vertx.eventBus();
+        MessageConsumer<LocalSumsMessage> sumsConsumer = eventBus.consumer(tree.sumsAddress(level, index),
+                message -> handleLocalSum(message.body()));
+        MessageConsumer<WeightsMessage> weightsConsumer = eventBus.consumer(tree.weightsAddress(level, index),
+                message -> forwardWeights(message.body()));
+
+        Future<Void> sumsRegistration = Future.future();
+        Future<Void> weightsRegistration = Future.future();
+        sumsConsumer.completionHandler(sumsRegistration.completer());
+        weightsConsumer.completionHandler(weightsRegistration.completer());
+        CompositeFuture.all(sumsRegistration, weightsRegistration).setHandler(ar -> {
+            if (ar.succeeded()) {
+                future.complete();
+            } else {
+                future.fail("Couldn't register message consumers");
+            }
+        });
+    }
+
+    private void forwardWeights(WeightsMessage message) {
+        for (int i = 0; i < received.length; i++) {
+            vertx.eventBus().send(tree.weightsAddress(level - 1, firstChild + i), message);
+        }
+    }
+
+    private void handleLocalSum(LocalSumsMessage message) {
+        int child = message.slaveId - firstChild;
+        if (child < 0 || child >= received.length || received[child]) {
+            return;
+        }
+        if (receivedNumber == 0) {
+            if (gradientSum == null) {
+                gradientSum = new double[message.gradientLength()];
+            } else {
+                Arrays.fill(gradientSum, 0.0);
+            }
+            costFunctionSum = 0;
+            pointsNumber = 0;
+            computeTime = 0;
+            version = message.version;
+        }
+        received[child] = true;
+
+        costFunctionSum += message.localCostFunction;
+        message.addGradientTo(gradientSum);
+        pointsNumber += message.pointsNumber;
+        computeTime = Math.max(computeTime, message.computeTime);
+
+        if (++receivedNumber == received.length) {
+            receivedNumber = 0;
+            Arrays.fill(received, false);
+            vertx.eventBus().send(tree.parentSumsAddress(level, index),
+                    new LocalSumsMessage(index, version, costFunctionSum, gradientSum, pointsNumber, computeTime));
+        }
+    }
+}
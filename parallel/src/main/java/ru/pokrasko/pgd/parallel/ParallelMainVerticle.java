@@ -1,34 +1,64 @@
 package ru.pokrasko.pgd.parallel;
 
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Future;
+import io.vertx.core.WorkerExecutor;
 import io.vertx.core.eventbus.EventBus;
-import io.vertx.core.json.JsonArray;
+import io.vertx.core.eventbus.MessageConsumer;
 import io.vertx.core.json.JsonObject;
+import ru.pokrasko.pgd.common.Checkpoint;
+import ru.pokrasko.pgd.common.Dataset;
 import ru.pokrasko.pgd.common.GradientDescent;
+import ru.pokrasko.pgd.common.GramStatistics;
 import ru.pokrasko.pgd.common.InputFileReader;
-import ru.pokrasko.pgd.common.Point;
+import ru.pokrasko.pgd.common.LearningRateSchedule;
+import ru.pokrasko.pgd.common.OptimizationMetrics;
+import ru.pokrasko.pgd.common.OptimizerOptions;
+import ru.pokrasko.pgd.common.StepPolicy;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.function.BiConsumer;
+import java.util.function.DoubleUnaryOperator;
 
 public class ParallelMainVerticle extends AbstractVerticle {
-    public static final String INPUT_CONFIG_KEY = "input";
-    public static final String OUTPUT_CONFIG_KEY = "output";
+    public static final String INPUT_CONFIG_KEY = OptimizerOptions.INPUT_CONFIG_KEY;
+    public static final String OUTPUT_CONFIG_KEY = OptimizerOptions.OUTPUT_CONFIG_KEY;
+    public static final String CONVERGENCE_CONFIG_KEY = OptimizerOptions.CONVERGENCE_CONFIG_KEY;
     public static final String SLAVES_CONFIG_KEY = "slaves";
-    public static final String CONVERGENCE_CONFIG_KEY = "convergence";
+    public static final String CLUSTERED_CONFIG_KEY = "clustered";
+    public static final String STALENESS_CONFIG_KEY = "staleness";
+    public static final String CHUNKS_CONFIG_KEY = "chunks";
+    public static final String EXECUTION_CONFIG_KEY = "execution";
+    public static final String FAN_IN_CONFIG_KEY = "fanIn";
+    public static final String COMPRESSION_CONFIG_KEY = "compression";
+    public static final String WEIGHTS_COMPRESSION_CONFIG_KEY = "weightsCompression";
+    public static final String TOP_K_CONFIG_KEY = "topK";
 
     static final String READINESS_MESSAGE_ADDRESS = "ready";
+    static final String READINESS_REQUEST_MESSAGE_ADDRESS = "ready-request";
     static final String LOCAL_SUMS_MESSAGE_ADDRESS = "local-sums";
+    static final String GRAM_STATISTICS_MESSAGE_ADDRESS = "gram-statistics";
+    static final String DIRECTIONAL_SUMS_MESSAGE_ADDRESS = "directional-sums";
+    static final String FINISH_MESSAGE_ADDRESS = "finish";
+    static final String LOADER_POOL_NAME = "input-loaders";
+
+    private static final double SPEED_SMOOTHING = 0.3;
 
     private Future<Void> future;
+    private OptimizerOptions options;
     private long startTime;
     private int iterations;
     private String outputFilename;
 
     private Integer slavesNumber;
+    private boolean clustered;
+    private AggregationTree tree;
+    private int reportersNumber;
 
     private List<Boolean> readiness;
     private int readinessNumber;
@@ -37,123 +67,749 @@ public class ParallelMainVerticle extends AbstractVerticle {
     private int dimensiality;
     private Double convergence;
 
-    private List<Double> oldWeights;
-    private List<Double> newWeights;
+    private String checkpointFilename;
+    private int checkpointInterval;
+    private Checkpoint initialState;
+    private int rounds;
+
+    private LearningRateSchedule schedule;
+    private int maxEpochs;
+    private int maxIterations;
+    private int epochs;
+    private int epochPointsNumber;
+    private double epochResidualSquareSum;
+
+    private double[] newWeights;
     private Double costFunction;
-    private List<Double> gradient;
+    private double[] gradient;
 
-    private List<Double> partialCostFunctions;
-    private List<List<Double>> partialGradients;
+    private StepPolicy stepPolicy;
+    private boolean[] directionalReceived;
+    private int directionalReceivedNumber;
+    private double[] directionalSums;
+
+    private double[][] weightsBuffers;
+
+    private boolean[] partialReceived;
+    private double partialCostFunctionSum;
+    private double[] partialGradientSum;
+    private double[] partialCostFunctions;
+    private double[][] partialGradients;
     private int partialReceivedNumber;
+    private int partialPointsNumber;
+
+    private Integer staleness;
+    private int version;
+    private int[] slaveVersions;
+    private int roundVersion;
+    private int roundReportedNumber;
+    private double[] roundWeights;
+    private double[] roundGradient;
+    private double[] spareRoundGradient;
+    private double roundGradientStep = 1.0;
+    private int refreshedPointsNumber;
+    private boolean finished;
+
+    private int chunksNumber;
+    private int[] partitionBounds;
+    private double[] slaveSpeeds;
+    private int rebalancesNumber;
+
+    private boolean normal;
+    private GramStatistics[] partialGramStatistics;
+    private int gramReceivedNumber;
+    private boolean solved;
+
+    private Compression compression;
+    private double[] compressedGradientSum;
+    private Compression weightsCompression;
+    private int topK;
+    private double[] broadcastWeights;
+    private double[] weightsDelta;
+
+    private OptimizationMetrics metrics;
+    private long[] publishTimes;
 
     @Override
     public void start(Future<Void> future) throws Exception {
         this.future = future;
 
         try {
-            String inputFilename = config().getString(INPUT_CONFIG_KEY);
-            if (inputFilename == null) {
-                throw new IllegalArgumentException("You should specify input file name in the configuration file");
-            }
-            outputFilename = config().getString(OUTPUT_CONFIG_KEY);
-            List<Point> points = new InputFileReader(inputFilename).getPoints();
-
-            size = points.size();
-            dimensiality = GradientDescent.dimensiality(points);
-            convergence = config().getDouble(CONVERGENCE_CONFIG_KEY);
-            if (convergence == null) {
-                throw new IllegalArgumentException("You should specify convergence value in the configuration file");
-            }
+            options = new OptimizerOptions(config());
+            String inputFilename = options.inputFilename();
+            outputFilename = options.outputFilename();
+            convergence = options.convergence();
 
             slavesNumber = config().getInteger(SLAVES_CONFIG_KEY);
             if (slavesNumber == null) {
                 throw new IllegalArgumentException("You should specify the slaves number in the configuration file");
             }
-            int pointsBySlave = size % slavesNumber == 0
-                    ? size / slavesNumber
-                    : size / slavesNumber + 1;
 
-            readiness = new ArrayList<>(Collections.nCopies(size, false));
+            Integer batchSize = options.batchSize();
+            schedule = options.schedule();
+            maxEpochs = options.maxEpochs();
+            maxIterations = options.maxIterations();
+            staleness = config().getInteger(STALENESS_CONFIG_KEY);
+            if (staleness != null) {
+                if (staleness < 0) {
+                    throw new IllegalArgumentException("The staleness bound should be non-negative");
+                }
+                if (batchSize != null) {
+                    throw new IllegalArgumentException(
+                            "Asynchronous mode can't be used with mini-batch gradient descent");
+                }
+            }
+            stepPolicy = options.stepPolicy();
+            if (staleness != null && stepPolicy.type() != StepPolicy.Type.BB) {
+                throw new IllegalArgumentException("Asynchronous mode can be used only with the bb step policy");
+            }
+            long seed = options.seed();
+            ExecutionModel execution = ExecutionModel.parse(config().getString(EXECUTION_CONFIG_KEY,
+                    ExecutionModel.EVENT_LOOP.toString()));
+            checkpointFilename = options.checkpointFilename();
+            checkpointInterval = options.checkpointInterval();
+            normal = options.isNormal();
+
+            clustered = config().getBoolean(CLUSTERED_CONFIG_KEY, false);
+            if (clustered && !vertx.isClustered()) {
+                throw new IllegalStateException("Clustered mode requires Vert.x to be started with -cluster option");
+            }
+
+            chunksNumber = config().getInteger(CHUNKS_CONFIG_KEY, 0);
+            if (chunksNumber != 0) {
+                if (chunksNumber < slavesNumber) {
+                    throw new IllegalArgumentException("The chunks number should be at least the slaves number");
+                }
+                if (clustered || staleness != null || batchSize != null || options.isStreaming()) {
+                    throw new IllegalArgumentException("Rebalancing can't be used with clustered mode, "
+                            + "asynchronous mode, mini-batch gradient descent or streaming input");
+                }
+            }
+            Integer fanIn = config().getInteger(FAN_IN_CONFIG_KEY);
+            if (fanIn != null) {
+                if (fanIn < 2) {
+                    throw new IllegalArgumentException("The fan-in should be at least 2");
+                }
+                if (staleness != null || chunksNumber != 0) {
+                    throw new IllegalArgumentException(
+                            "Hierarchical aggregation can't be used with asynchronous mode or rebalancing");
+                }
+            }
+            tree = AggregationTree.build(slavesNumber, fanIn);
+            reportersNumber = tree != null ? tree.levelSize(tree.topLevel()) : slavesNumber;
+            compression = Compression.parse(config().getString(COMPRESSION_CONFIG_KEY,
+                    Compression.NONE.toString()));
+            weightsCompression = Compression.parse(config().getString(WEIGHTS_COMPRESSION_CONFIG_KEY,
+                    Compression.NONE.toString()));
+            if (weightsCompression == Compression.TOP_K) {
+                throw new IllegalArgumentException("Weights can be compressed only with bfloat16 or int8");
+            }
+            if (weightsCompression != Compression.NONE && staleness != null) {
+                throw new IllegalArgumentException("Weights compression can't be used with asynchronous mode");
+            }
+            if (normal && chunksNumber != 0) {
+                throw new IllegalArgumentException("The normal equations solver can't be used with rebalancing");
+            }
+
+            metrics = options.metrics();
+            if (metrics != null) {
+                publishTimes = new long[staleness != null ? staleness + 2 : 1];
+            }
+
+            readiness = new ArrayList<>(Collections.nCopies(slavesNumber, false));
             EventBus eventBus = vertx.eventBus();
-            eventBus.consumer(READINESS_MESSAGE_ADDRESS, message -> checkReadiness((int) message.body()));
-            eventBus.consumer(LOCAL_SUMS_MESSAGE_ADDRESS, message ->
-                    handleLocalSum(new LocalSumsMessage((JsonObject) message.body()))
-            );
-
-            for (int i = 0; i < slavesNumber - 1; i++) {
-                vertx.deployVerticle(
-                        new ParallelSlaveVerticle(i, points.subList(i * pointsBySlave, (i + 1) * pointsBySlave)));
-            }
-            vertx.deployVerticle(
-                    new ParallelSlaveVerticle(slavesNumber - 1,
-                            points.subList((slavesNumber - 1) * pointsBySlave, points.size())));
+            registerCodecs(eventBus, metrics);
+            eventBus.<LocalSumsMessage>consumer(LOCAL_SUMS_MESSAGE_ADDRESS, message -> {
+                if (staleness != null) {
+                    handleStaleLocalSum(message.body());
+                } else {
+                    handleLocalSum(message.body());
+                }
+            });
+            eventBus.<GramStatisticsMessage>consumer(GRAM_STATISTICS_MESSAGE_ADDRESS,
+                    message -> handleGramStatistics(message.body()));
+            eventBus.<DirectionalSumsMessage>consumer(DIRECTIONAL_SUMS_MESSAGE_ADDRESS,
+                    message -> handleDirectionalSums(message.body()));
+            MessageConsumer<JsonObject> readinessMessageConsumer = eventBus.consumer(READINESS_MESSAGE_ADDRESS,
+                    message -> checkReadiness(message.body()));
+
+            if (clustered) {
+                InputFileReader reader = new InputFileReader(inputFilename);
+                size = reader.getSize();
+                dimensiality = reader.getDimensiality();
+                topK = topK(config(), dimensiality);
+                initialState = options.restoreCheckpoint(dimensiality);
+
+                readinessMessageConsumer.completionHandler(ar -> {
+                    System.out.printf("Waiting for %d remote slave verticles\n", slavesNumber);
+                    eventBus.publish(READINESS_REQUEST_MESSAGE_ADDRESS, null);
+                });
+                return;
+            }
+
+            InputFileReader reader = new InputFileReader(inputFilename);
+            boolean pipelined = options.isLoadedIntoHeap() && chunksNumber == 0 && !reader.isSparse();
+            Dataset dataset = pipelined ? null : options.loadDataset();
+            size = pipelined ? reader.getSize() : dataset.size();
+            dimensiality = pipelined ? reader.getDimensiality() : dataset.dimensiality();
+            topK = topK(config(), dimensiality);
+            initialState = options.restoreCheckpoint(dimensiality);
+
+            if (chunksNumber != 0) {
+                slaveSpeeds = new double[slavesNumber];
+                partitionBounds = new int[slavesNumber + 1];
+                for (int i = 0; i <= slavesNumber; i++) {
+                    partitionBounds[i] = partitionBound(partitionBound(i, slavesNumber, chunksNumber),
+                            chunksNumber, size);
+                }
+            }
+
+            DeploymentOptions slaveOptions = new DeploymentOptions();
+            if (execution == ExecutionModel.WORKER) {
+                slaveOptions.setWorker(true)
+                        .setWorkerPoolName(ParallelSlaveVerticle.WORKER_POOL_NAME)
+                        .setWorkerPoolSize(Runtime.getRuntime().availableProcessors());
+            }
+            BiConsumer<Integer, Dataset> slaveDeployer = (slaveId, partition) ->
+                    vertx.deployVerticle(new ParallelSlaveVerticle(slaveId, partition,
+                            batchSize != null ? localBatchSize(batchSize, partition.size(), size) : 0, seed,
+                            staleness != null, execution, tree, compression, topK), slaveOptions);
+            Future<Void> aggregatorsDeployment = tree != null
+                    ? ParallelAggregatorVerticle.deployAll(vertx, tree)
+                    : Future.succeededFuture();
+            aggregatorsDeployment.setHandler(ar -> {
+                if (ar.failed()) {
+                    future.fail(ar.cause());
+                    exit();
+                    return;
+                }
+                if (pipelined) {
+                    loadPartitions(reader, slaveDeployer);
+                    return;
+                }
+                for (int i = 0; i < slavesNumber; i++) {
+                    slaveDeployer.accept(i, chunksNumber != 0 ? dataset : dataset.subset(
+                            partitionBound(i, slavesNumber, size), partitionBound(i + 1, slavesNumber, size)));
+                }
+            });
         } catch (Exception e) {
             future.fail(e);
-            vertx.close();
+            exit();
+        }
+    }
+
+    @Override
+    public void stop() throws Exception {
+        unregisterCodecs(vertx.eventBus());
+    }
+
+    private void loadPartitions(InputFileReader reader, BiConsumer<Integer, Dataset> slaveDeployer) {
+        long loadingStartTime = System.currentTimeMillis();
+        try {
+            reader.checkLength();
+        } catch (IOException e) {
+            future.fail(e);
+            exit();
+            return;
+        }
+
+        WorkerExecutor loader = vertx.createSharedWorkerExecutor(LOADER_POOL_NAME, options.loadingThreads());
+        int[] loadedNumber = new int[1];
+        for (int i = 0; i < slavesNumber; i++) {
+            int slaveId = i;
+            loader.<Dataset>executeBlocking(partition -> {
+                try {
+                    partition.complete(reader.getDataset(partitionBound(slaveId, slavesNumber, size),
+                            partitionBound(slaveId + 1, slavesNumber, size)));
+                } catch (IOException e) {
+                    partition.fail(e);
+                }
+            }, false, ar -> {
+                if (ar.failed()) {
+                    if (!future.isComplete()) {
+                        future.fail(ar.cause());
+                        exit();
+                    }
+                    return;
+                }
+                slaveDeployer.accept(slaveId, ar.result());
+                if (++loadedNumber[0] == slavesNumber) {
+                    System.out.printf("Input parsing finished (%d ms)\n",
+                            System.currentTimeMillis() - loadingStartTime);
+                    loader.close();
+                }
+            });
         }
     }
 
-    private void checkReadiness(int slaveId) {
+    static int topK(JsonObject config, int dimensiality) {
+        Integer topK = config.getInteger(TOP_K_CONFIG_KEY);
+        if (topK == null) {
+            return Compression.defaultTopK(dimensiality + 1);
+        }
+        if (topK <= 0 || topK > dimensiality + 1) {
+            throw new IllegalArgumentException("The top-k number should be positive and not greater than "
+                    + "the weights number " + (dimensiality + 1));
+        }
+        return topK;
+    }
+
+    static void registerCodecs(EventBus eventBus, OptimizationMetrics metrics) {
+        eventBus.registerDefaultCodec(WeightsMessage.class, new WeightsMessageCodec(metrics));
+        eventBus.registerDefaultCodec(LocalSumsMessage.class, new LocalSumsMessageCodec(metrics));
+        eventBus.registerDefaultCodec(GramStatisticsMessage.class, new GramStatisticsMessageCodec(metrics));
+        eventBus.registerDefaultCodec(DirectionMessage.class, new DirectionMessageCodec(metrics));
+        eventBus.registerDefaultCodec(DirectionalSumsMessage.class, new DirectionalSumsMessageCodec(metrics));
+    }
+
+    static void unregisterCodecs(EventBus eventBus) {
+        eventBus.unregisterDefaultCodec(WeightsMessage.class);
+        eventBus.unregisterDefaultCodec(LocalSumsMessage.class);
+        eventBus.unregisterDefaultCodec(GramStatisticsMessage.class);
+        eventBus.unregisterDefaultCodec(DirectionMessage.class);
+        eventBus.unregisterDefaultCodec(DirectionalSumsMessage.class);
+    }
+
+    static int partitionBound(int slaveId, int slavesNumber, int size) {
+        return (int) ((long) slaveId * size / slavesNumber);
+    }
+
+    static int localBatchSize(int batchSize, int partitionSize, int size) {
+        return (int) Math.max(1, Math.round((double) batchSize * partitionSize / size));
+    }
+
+    private void checkReadiness(JsonObject message) {
+        int slaveId = message.getInteger(ParallelSlaveVerticle.SLAVE_CONFIG_KEY);
+        if (slaveId < 0 || slaveId >= slavesNumber) {
+            System.err.printf("Unexpected slave verticle %d is ignored\n", slaveId);
+            return;
+        }
+        Compression slaveCompression = Compression.parse(message.getString(COMPRESSION_CONFIG_KEY));
+        if (slaveCompression != compression) {
+            if (!future.isComplete()) {
+                future.fail(new IllegalStateException(String.format("Slave verticle %d uses %s compression "
+                        + "while the master verticle uses %s compression", slaveId, slaveCompression, compression)));
+                exit();
+            }
+            return;
+        }
         if (!readiness.set(slaveId, true) && ++readinessNumber == slavesNumber) {
+            if (normal && dimensiality <= OptimizerOptions.MAX_NORMAL_DIMENSIALITY) {
+                requestGramStatistics();
+            } else {
+                if (normal) {
+                    System.out.printf("Dimensiality %d is too high for the normal equations solver, "
+                            + "gradient descent is used\n", dimensiality);
+                }
+                startOptimization();
+            }
+        }
+    }
+
+    private void requestGramStatistics() {
+        startTime = System.currentTimeMillis();
+        partialGramStatistics = new GramStatistics[slavesNumber];
+        vertx.eventBus().publish(ParallelSlaveVerticle.GRAM_REQUEST_MESSAGE_ADDRESS, null);
+    }
+
+    private void handleGramStatistics(GramStatisticsMessage message) {
+        if (partialGramStatistics[message.slaveId] != null) {
+            return;
+        }
+        partialGramStatistics[message.slaveId] = message.statistics;
+        if (++gramReceivedNumber < slavesNumber) {
+            return;
+        }
+
+        GramStatistics statistics = new GramStatistics(dimensiality);
+        for (GramStatistics partialStatistics : partialGramStatistics) {
+            statistics.merge(partialStatistics);
+        }
+        partialGramStatistics = null;
+
+        double[] weights = statistics.solve();
+        if (weights == null) {
+            System.out.println("The normal equations are ill-conditioned, gradient descent is used");
             startOptimization();
+            return;
         }
+        solved = true;
+        newWeights = weights;
+        printResults();
     }
 
     private void startOptimization() {
         startTime = System.currentTimeMillis();
-        iterations++;
+        iterations = initialState.iterations() + 1;
+        epochs = initialState.epochs();
+        if (initialState.iterations() > 0) {
+            costFunction = initialState.costFunction();
+        }
 
-        partialCostFunctions = new ArrayList<>(Collections.nCopies(slavesNumber, null));
-        partialGradients = new ArrayList<>(Collections.nCopies(slavesNumber, null));
+        if (staleness != null) {
+            if (initialState.stepType() == StepPolicy.Type.BB && initialState.stepState().length == 2) {
+                roundWeights = initialState.stepState()[0];
+                roundGradient = initialState.stepState()[1];
+            }
+            partialCostFunctions = new double[slavesNumber];
+            partialGradients = new double[slavesNumber][];
+            gradient = new double[dimensiality + 1];
+        } else {
+            partialReceived = new boolean[reportersNumber];
+            partialGradientSum = new double[dimensiality + 1];
+            if (compression != Compression.NONE) {
+                compressedGradientSum = new double[dimensiality + 1];
+            }
+            initialState.restoreStepPolicy(stepPolicy);
+            if (stepPolicy.searchesLine()) {
+                directionalReceived = new boolean[slavesNumber];
+                directionalSums = new double[2];
+            }
+        }
+        weightsBuffers = new double[staleness != null ? staleness + 2 : 2][];
+        slaveVersions = new int[slavesNumber];
+        Arrays.fill(slaveVersions, -1);
+
+        newWeights = initialState.weights();
+        initialState = null;
+        if (metrics != null) {
+            metrics.start();
+        }
+        publishWeights();
+    }
 
-        newWeights = new ArrayList<>(Collections.nCopies(dimensiality + 1, 1.0));
-        vertx.eventBus().publish(ParallelSlaveVerticle.WEIGHTS_MESSAGE_ADDRESS, weightsToJson());
+    private void publishWeights() {
+        if (metrics != null) {
+            publishTimes[version % publishTimes.length] = System.nanoTime();
+        }
+        WeightsMessage message = weightsCompression != Compression.NONE
+                ? compressWeights()
+                : new WeightsMessage(version, newWeights, partitionBounds);
+        if (tree == null) {
+            vertx.eventBus().publish(ParallelSlaveVerticle.WEIGHTS_MESSAGE_ADDRESS, message);
+            return;
+        }
+        for (int i = 0; i < reportersNumber; i++) {
+            vertx.eventBus().send(tree.weightsAddress(tree.topLevel(), i), message);
+        }
+    }
+
+    private WeightsMessage compressWeights() {
+        if (broadcastWeights == null) {
+            broadcastWeights = newWeights.clone();
+            weightsDelta = new double[newWeights.length];
+            return new WeightsMessage(version, newWeights.clone(), partitionBounds);
+        }
+
+        for (int i = 0; i < newWeights.length; i++) {
+            weightsDelta[i] = newWeights[i] - broadcastWeights[i];
+        }
+        CompressedVector delta = CompressedVector.compress(weightsCompression, weightsDelta, topK);
+        delta.addTo(broadcastWeights);
+        System.arraycopy(broadcastWeights, 0, newWeights, 0, newWeights.length);
+        return new WeightsMessage(version, delta, partitionBounds);
+    }
+
+    private void recordLocalSum(LocalSumsMessage message) {
+        long latency = message.version > version - publishTimes.length
+                ? System.nanoTime() - publishTimes[message.version % publishTimes.length] - message.computeTime
+                : -1;
+        metrics.slaveReported(iterations, message.slaveId, message.pointsNumber, message.computeTime, latency);
     }
 
     private void handleLocalSum(LocalSumsMessage message) {
-        if (partialGradients.set(message.slaveId, message.localGradient) == null) {
-            partialCostFunctions.set(message.slaveId, message.localCostFunction);
-            if (++partialReceivedNumber == slavesNumber) {
-                partialReceivedNumber = 0;
+        if (partialReceived[message.slaveId]) {
+            return;
+        }
+        partialReceived[message.slaveId] = true;
+        if (metrics != null) {
+            recordLocalSum(message);
+        }
+        partialCostFunctionSum += message.localCostFunction;
+        message.addGradientTo(compressedGradientSum != null ? compressedGradientSum : partialGradientSum);
+        partialPointsNumber += message.pointsNumber;
+        if (slaveSpeeds != null) {
+            updateSlaveSpeed(message.slaveId, message.pointsNumber, message.computeTime);
+        }
+        if (++partialReceivedNumber == reportersNumber) {
+            partialReceivedNumber = 0;
+            Arrays.fill(partialReceived, false);
+            if (compressedGradientSum != null) {
+                System.arraycopy(compressedGradientSum, 0, partialGradientSum, 0, partialGradientSum.length);
+            }
+            if (slaveSpeeds != null) {
+                rebalance();
+            }
+            if (schedule != null) {
+                updateWeightsByMiniBatch();
+            } else {
                 updateWeights();
             }
+            partialPointsNumber = 0;
+        }
+    }
+
+    private void handleStaleLocalSum(LocalSumsMessage message) {
+        int slaveId = message.slaveId;
+        if (finished || message.version < slaveVersions[slaveId]) {
+            return;
+        }
+        if (metrics != null) {
+            recordLocalSum(message);
+        }
+        if (slaveVersions[slaveId] < 0) {
+            partialReceivedNumber++;
+        }
+        if (slaveVersions[slaveId] < roundVersion && message.version >= roundVersion) {
+            roundReportedNumber++;
+        }
+        slaveVersions[slaveId] = message.version;
+        if (compression != Compression.NONE) {
+            if (partialGradients[slaveId] == null) {
+                partialGradients[slaveId] = new double[dimensiality + 1];
+            }
+            message.addGradientTo(partialGradients[slaveId]);
+        } else {
+            partialGradients[slaveId] = message.localGradient;
+        }
+        partialCostFunctions[slaveId] = message.localCostFunction;
+        refreshedPointsNumber += message.pointsNumber;
+        if (partialReceivedNumber < slavesNumber) {
+            return;
+        }
+
+        boolean roundCompleted = roundReportedNumber == slavesNumber;
+        if (roundCompleted) {
+            roundReportedNumber = 0;
+            roundVersion = version + 1;
+
+            Double oldCostFunction = costFunction;
+            costFunction = sumUpCostFunction();
+            if (oldCostFunction != null
+                    && GradientDescent.checkConvergence(oldCostFunction, costFunction, convergence)) {
+                if (metrics != null) {
+                    metrics.iterationFinished(iterations, costFunction, Double.NaN);
+                }
+                printResults();
+                return;
+            }
+
+            double[] oldRoundGradient = roundGradient;
+            roundGradient = sumUpGradient(size, spareRoundGradient != null
+                    ? spareRoundGradient
+                    : new double[dimensiality + 1]);
+            if (roundWeights != null) {
+                roundGradientStep = GradientDescent.updateGradientStep(roundWeights, newWeights,
+                        oldRoundGradient, roundGradient, roundGradientStep);
+            } else {
+                roundWeights = new double[dimensiality + 1];
+            }
+            spareRoundGradient = oldRoundGradient;
+            System.arraycopy(newWeights, 0, roundWeights, 0, newWeights.length);
+        }
+
+        int oldestVersion = version;
+        for (int slaveVersion : slaveVersions) {
+            oldestVersion = Math.min(oldestVersion, slaveVersion);
+        }
+        int delay = version - oldestVersion;
+        if (delay > staleness) {
+            return;
+        }
+        if (iterations >= maxIterations) {
+            printResults();
+            return;
+        }
+        iterations++;
+
+        gradient = sumUpGradient(size, gradient);
+        double gradientStep = roundGradientStep * refreshedPointsNumber / size / (delay + 1);
+        refreshedPointsNumber = 0;
+        if (metrics != null) {
+            metrics.iterationFinished(iterations - 1, roundCompleted ? costFunction : Double.NaN, gradientStep);
+        }
+        descend(gradientStep);
+
+        if (roundCompleted && checkpointFilename != null && ++rounds % checkpointInterval == 0) {
+            new Checkpoint(iterations - 1, 0, costFunction, newWeights, StepPolicy.Type.BB,
+                    new double[][] {roundWeights, roundGradient}).tryWrite(checkpointFilename);
+        }
+    }
+
+    private void updateSlaveSpeed(int slaveId, int pointsNumber, long computeTime) {
+        double speed = (double) pointsNumber / Math.max(computeTime, 1);
+        slaveSpeeds[slaveId] = slaveSpeeds[slaveId] != 0
+                ? SPEED_SMOOTHING * speed + (1 - SPEED_SMOOTHING) * slaveSpeeds[slaveId]
+                : speed;
+    }
+
+    private void rebalance() {
+        double totalSpeed = Arrays.stream(slaveSpeeds).sum();
+
+        int[] chunkBounds = new int[slavesNumber + 1];
+        double cumulativeSpeed = 0;
+        for (int i = 1; i < slavesNumber; i++) {
+            cumulativeSpeed += slaveSpeeds[i - 1];
+            int chunkBound = (int) Math.round(cumulativeSpeed / totalSpeed * chunksNumber);
+            chunkBounds[i] = Math.min(Math.max(chunkBound, chunkBounds[i - 1] + 1), chunksNumber - slavesNumber + i);
+        }
+        chunkBounds[slavesNumber] = chunksNumber;
+
+        int[] newPartitionBounds = new int[slavesNumber + 1];
+        for (int i = 0; i <= slavesNumber; i++) {
+            newPartitionBounds[i] = partitionBound(chunkBounds[i], chunksNumber, size);
+        }
+        if (!Arrays.equals(newPartitionBounds, partitionBounds)) {
+            partitionBounds = newPartitionBounds;
+            rebalancesNumber++;
         }
     }
 
     private void updateWeights() {
         Double oldCostFunction = costFunction;
-        costFunction = sumUpCostFunction();
+        costFunction = partialCostFunctionSum / size;
+        partialCostFunctionSum = 0;
         if (oldCostFunction != null
-                && GradientDescent.checkConvergence(oldCostFunction, costFunction, convergence)) {
+                && GradientDescent.checkConvergence(oldCostFunction, costFunction, convergence)
+                || iterations >= maxIterations) {
+            if (metrics != null) {
+                metrics.iterationFinished(iterations, costFunction, Double.NaN);
+            }
             printResults();
             return;
         }
         iterations++;
 
-        List<Double> oldGradient = gradient;
-        gradient = sumUpGradient();
+        double[] oldGradient = gradient;
+        gradient = takeGradientSum(size);
+        partialGradientSum = recycleGradient(oldGradient);
+        if (stepPolicy.searchesLine()) {
+            vertx.eventBus().publish(ParallelSlaveVerticle.DIRECTION_MESSAGE_ADDRESS,
+                    new DirectionMessage(version, gradient));
+        } else {
+            updateWeightsByStepPolicy(null);
+        }
+    }
+
+    private void handleDirectionalSums(DirectionalSumsMessage message) {
+        if (finished || message.version != version || directionalReceived[message.slaveId]) {
+            return;
+        }
+        directionalReceived[message.slaveId] = true;
+        addTo(directionalSums, message.sums);
+        if (++directionalReceivedNumber == slavesNumber) {
+            directionalReceivedNumber = 0;
+            Arrays.fill(directionalReceived, false);
+            updateWeightsByStepPolicy(GradientDescent.lineCost(costFunction, directionalSums, size));
+            Arrays.fill(directionalSums, 0.0);
+        }
+    }
+
+    private void updateWeightsByStepPolicy(DoubleUnaryOperator lineCost) {
+        double[] weights = newWeights;
+        version++;
+        newWeights = weightsBuffer(version);
+        double gradientStep = stepPolicy.update(weights, costFunction, gradient, lineCost, newWeights);
+        if (metrics != null) {
+            metrics.iterationFinished(iterations - 1, costFunction, gradientStep);
+        }
+        publishWeights();
+        if (checkpointFilename != null && (iterations - 1) % checkpointInterval == 0) {
+            new Checkpoint(iterations - 1, 0, costFunction, newWeights, stepPolicy.type(), stepPolicy.state())
+                    .tryWrite(checkpointFilename);
+        }
+    }
 
-        double gradientStep = oldWeights != null
-                ? GradientDescent.updateGradientStep(oldWeights, newWeights, oldGradient, gradient)
-                : 1.0;
+    private void descend(double gradientStep) {
+        double[] oldWeights = newWeights;
+        version++;
+        newWeights = weightsBuffer(version);
+        for (int i = 0; i < gradient.length; i++) {
+            newWeights[i] = oldWeights[i] - gradientStep * gradient[i];
+        }
+        publishWeights();
+    }
 
-        partialCostFunctions = new ArrayList<>(Collections.nCopies(slavesNumber, null));
-        partialGradients = new ArrayList<>(Collections.nCopies(slavesNumber, null));
+    private double[] weightsBuffer(int version) {
+        int index = version % weightsBuffers.length;
+        if (weightsBuffers[index] == null) {
+            weightsBuffers[index] = new double[dimensiality + 1];
+        }
+        return weightsBuffers[index];
+    }
 
-        oldWeights = newWeights;
-        newWeights = new ArrayList<>(dimensiality + 1);
-        for (int i = 0; i < gradient.size(); i++) {
-            newWeights.add(oldWeights.get(i) - gradientStep * gradient.get(i));
+    private void updateWeightsByMiniBatch() {
+        boolean epochFinished = false;
+        epochResidualSquareSum += partialCostFunctionSum;
+        partialCostFunctionSum = 0;
+        epochPointsNumber += partialPointsNumber;
+        if (epochPointsNumber >= size) {
+            epochs++;
+
+            Double oldCostFunction = costFunction;
+            costFunction = epochResidualSquareSum / epochPointsNumber;
+            epochResidualSquareSum = 0;
+            epochPointsNumber = 0;
+            epochFinished = true;
+            if (oldCostFunction != null && GradientDescent.checkConvergence(oldCostFunction, costFunction, convergence)
+                    || epochs >= maxEpochs) {
+                if (metrics != null) {
+                    metrics.iterationFinished(iterations, costFunction, Double.NaN);
+                }
+                printResults();
+                return;
+            }
+        }
+        iterations++;
+
+        double[] oldGradient = gradient;
+        gradient = takeGradientSum(partialPointsNumber);
+        partialGradientSum = recycleGradient(oldGradient);
+        double learningRate = schedule.learningRate(epochs);
+        if (metrics != null) {
+            metrics.iterationFinished(iterations - 1, epochFinished ? costFunction : Double.NaN, learningRate);
+        }
+        descend(learningRate);
+        if (epochFinished && checkpointFilename != null && epochs % checkpointInterval == 0) {
+            new Checkpoint(iterations - 1, epochs, costFunction, newWeights, null, null)
+                    .tryWrite(checkpointFilename);
         }
-        vertx.eventBus().publish(ParallelSlaveVerticle.WEIGHTS_MESSAGE_ADDRESS, weightsToJson());
     }
 
     private void printResults() {
+        finished = true;
+
         System.out.printf("Optimizing finished (%d ms)\n", System.currentTimeMillis() - startTime);
         System.out.println();
 
         System.out.printf("%d computing verticles were used\n", slavesNumber);
-        System.out.println("Amount of iterations: " + iterations);
+        if (staleness != null) {
+            System.out.printf("Asynchronous mode with staleness bound %d was used\n", staleness);
+        }
+        if (tree != null) {
+            System.out.printf("Hierarchical aggregation with fan-in %d was used, aggregator levels: %d\n",
+                    tree.fanIn(), tree.topLevel());
+        }
+        if (chunksNumber != 0) {
+            System.out.printf("%d chunks were rebalanced %d times, last partition sizes:", chunksNumber,
+                    rebalancesNumber);
+            for (int i = 0; i < slavesNumber; i++) {
+                System.out.print(" " + (partitionBounds[i + 1] - partitionBounds[i]));
+            }
+            System.out.println();
+        }
+        System.out.println("Gradient kernel: " + GradientDescent.kernelName());
+        if (solved) {
+            System.out.println("The normal equations were solved directly");
+        } else {
+            System.out.println("Amount of iterations: " + iterations);
+            if (schedule == null) {
+                System.out.println("Step policy: " + stepPolicy);
+            }
+        }
+        if (epochs > 0) {
+            System.out.println("Amount of epochs: " + epochs);
+        }
 
         if (outputFilename != null && GradientDescent.printWeightsToFile(newWeights, outputFilename)) {
             System.out.printf("Results are written into file \"%s\"\n", outputFilename);
@@ -161,25 +817,82 @@ public class ParallelMainVerticle extends AbstractVerticle {
             GradientDescent.printWeightsToSystemOut(newWeights);
         }
 
+        if (metrics != null) {
+            if (options.reportsMetrics()) {
+                metrics.report(System.out);
+            }
+            try {
+                metrics.close();
+            } catch (IOException e) {
+                System.err.println("Couldn't write the trace: " + e.getLocalizedMessage());
+            }
+        }
+
         System.out.println();
         System.out.println();
 
-        future.complete();
+        if (clustered) {
+            finishRemoteSlaves();
+        } else {
+            future.complete();
+            exit();
+        }
+    }
+
+    protected void exit() {
         vertx.close();
     }
 
+    private void finishRemoteSlaves() {
+        int[] finishedNumber = new int[1];
+        for (int i = 0; i < slavesNumber; i++) {
+            vertx.eventBus().send(FINISH_MESSAGE_ADDRESS + "." + i, null, reply -> {
+                if (++finishedNumber[0] == slavesNumber) {
+                    future.complete();
+                    exit();
+                }
+            });
+        }
+    }
+
     private double sumUpCostFunction() {
-        return partialCostFunctions.stream().reduce(0.0, Double::sum) / size;
+        double costFunctionSum = 0;
+        for (double partialCostFunction : partialCostFunctions) {
+            costFunctionSum += partialCostFunction;
+        }
+        return costFunctionSum / size;
+    }
+
+    private double[] sumUpGradient(int pointsNumber, double[] gradient) {
+        Arrays.fill(gradient, 0.0);
+        for (double[] partialGradient : partialGradients) {
+            addTo(gradient, partialGradient);
+        }
+        return divide(gradient, pointsNumber);
     }
 
-    private List<Double> sumUpGradient() {
-        return partialGradients.stream().reduce(
-                new ArrayList<>(Collections.nCopies(dimensiality + 1, 0.0)),
-                (xs, ys) -> GradientDescent.zipWith(xs, ys, Double::sum)
-        ).stream().map(x -> x / size).collect(Collectors.toList());
+    private double[] takeGradientSum(int pointsNumber) {
+        return divide(partialGradientSum, pointsNumber);
     }
 
-    private JsonArray weightsToJson() {
-        return new JsonArray(newWeights);
+    private double[] recycleGradient(double[] gradient) {
+        if (gradient == null) {
+            return new double[dimensiality + 1];
+        }
+        Arrays.fill(gradient, 0.0);
+        return gradient;
+    }
+
+    private static void addTo(double[] sum, double[] values) {
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] += values[i];
+        }
+    }
+
+    private static double[] divide(double[] values, int divisor) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] /= divisor;
+        }
+        return values;
     }
 }
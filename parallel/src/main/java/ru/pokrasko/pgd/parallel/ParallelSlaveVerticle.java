@@ -1,54 +1,321 @@
 package ru.pokrasko.pgd.parallel;
 
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
+import io.vertx.core.WorkerExecutor;
 import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.eventbus.MessageConsumer;
-import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import ru.pokrasko.pgd.common.Dataset;
 import ru.pokrasko.pgd.common.GradientDescent;
-import ru.pokrasko.pgd.common.Point;
+import ru.pokrasko.pgd.common.GramStatistics;
+import ru.pokrasko.pgd.common.InputFileReader;
+import ru.pokrasko.pgd.common.MiniBatchSampler;
+import ru.pokrasko.pgd.common.OptimizerOptions;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+public class ParallelSlaveVerticle extends AbstractVerticle {
+    public static final String SLAVE_CONFIG_KEY = "slave";
 
-class ParallelSlaveVerticle extends AbstractVerticle {
     static final String WEIGHTS_MESSAGE_ADDRESS = "weights";
+    static final String GRAM_REQUEST_MESSAGE_ADDRESS = "gram-request";
+    static final String DIRECTION_MESSAGE_ADDRESS = "direction";
+    static final String WORKER_POOL_NAME = "slave-workers";
 
     private int id;
-    private List<Point> points;
+    private Dataset dataset;
+    private int batchSize;
+    private long seed;
+    private boolean asynchronous;
+    private ExecutionModel execution = ExecutionModel.EVENT_LOOP;
+    private AggregationTree tree;
+    private Compression compression = Compression.NONE;
+    private int topK;
+
+    private WorkerExecutor executor;
+    private MiniBatchSampler sampler;
+    private Dataset partition;
+    private int partitionFrom;
+    private int partitionTo;
+    private double[] localGradient;
+    private double[] sentGradient;
+    private double[] gradientDelta;
+    private double[] weights;
+    private boolean ownWeights;
+    private double[] weightsSnapshot;
+    private double[] calculatedWeights;
+    private WeightsMessage pendingWeights;
+    private boolean calculating;
 
-    ParallelSlaveVerticle(int id, List<Point> points) {
+    public ParallelSlaveVerticle() {
+    }
+
+    ParallelSlaveVerticle(int id, Dataset dataset, int batchSize, long seed, boolean asynchronous,
+                          ExecutionModel execution, AggregationTree tree, Compression compression, int topK) {
         this.id = id;
-        this.points = points;
+        this.dataset = dataset;
+        this.batchSize = batchSize;
+        this.seed = seed;
+        this.asynchronous = asynchronous;
+        this.execution = execution;
+        this.tree = tree;
+        this.compression = compression;
+        this.topK = topK;
     }
 
     @Override
     public void start(Future<Void> future) throws Exception {
         EventBus eventBus = vertx.eventBus();
-        MessageConsumer<JsonArray> weightsMessageConsumer = eventBus.consumer(WEIGHTS_MESSAGE_ADDRESS, message ->
-                calculateLocalFunctions((List<Double>) message.body().getList()));
-        weightsMessageConsumer.completionHandler(ar -> {
+        Future<Void> aggregatorsDeployment = Future.succeededFuture();
+        if (dataset == null) {
+            try {
+                loadPartition();
+            } catch (Exception e) {
+                future.fail(e);
+                vertx.close();
+                return;
+            }
+
+            ParallelMainVerticle.registerCodecs(eventBus, null);
+            eventBus.consumer(ParallelMainVerticle.READINESS_REQUEST_MESSAGE_ADDRESS, message ->
+                    eventBus.send(ParallelMainVerticle.READINESS_MESSAGE_ADDRESS, readiness()));
+            eventBus.consumer(ParallelMainVerticle.FINISH_MESSAGE_ADDRESS + "." + id, message -> {
+                message.reply(null);
+                vertx.close();
+            });
+            if (tree != null) {
+                aggregatorsDeployment = ParallelAggregatorVerticle.deployHosted(vertx, tree, id);
+            }
+        }
+
+        if (batchSize > 0) {
+            sampler = new MiniBatchSampler(dataset.size(), batchSize, seed + id);
+        }
+        if (execution == ExecutionModel.BLOCKING) {
+            executor = vertx.createSharedWorkerExecutor(WORKER_POOL_NAME, Runtime.getRuntime().availableProcessors());
+        }
+
+        MessageConsumer<WeightsMessage> weightsMessageConsumer = eventBus.consumer(
+                tree != null ? tree.weightsAddress(0, id) : WEIGHTS_MESSAGE_ADDRESS,
+                message -> handleWeights(message.body()));
+        MessageConsumer<Void> gramRequestConsumer = eventBus.consumer(GRAM_REQUEST_MESSAGE_ADDRESS,
+                message -> calculateGramStatistics());
+        MessageConsumer<DirectionMessage> directionConsumer = eventBus.consumer(DIRECTION_MESSAGE_ADDRESS,
+                message -> calculateDirectionalSums(message.body()));
+        Future<Void> weightsRegistration = Future.future();
+        Future<Void> gramRequestRegistration = Future.future();
+        Future<Void> directionRegistration = Future.future();
+        weightsMessageConsumer.completionHandler(weightsRegistration.completer());
+        gramRequestConsumer.completionHandler(gramRequestRegistration.completer());
+        directionConsumer.completionHandler(directionRegistration.completer());
+        CompositeFuture.all(weightsRegistration, gramRequestRegistration, directionRegistration,
+                aggregatorsDeployment).setHandler(ar -> {
             if (ar.succeeded()) {
-                eventBus.send(ParallelMainVerticle.READINESS_MESSAGE_ADDRESS, id);
+                eventBus.send(ParallelMainVerticle.READINESS_MESSAGE_ADDRESS, readiness());
+                future.complete();
             } else {
-                future.fail("Couldn't register weight message consumer");
+                future.fail("Couldn't register message consumers or deploy aggregator verticles");
                 vertx.close();
             }
         });
     }
 
-    private void calculateLocalFunctions(List<Double> weights) {
-        double localCostFunction = points.size() * GradientDescent.costFunction(weights, points);
+    @Override
+    public void stop() throws Exception {
+        if (partition != null && partition != dataset) {
+            partition.close();
+        }
+        if (dataset != null) {
+            dataset.close();
+        }
+    }
+
+    private void loadPartition() throws Exception {
+        String inputFilename = config().getString(OptimizerOptions.INPUT_CONFIG_KEY);
+        if (inputFilename == null) {
+            throw new IllegalArgumentException("You should specify input file name in the configuration file");
+        }
+        Integer slavesNumber = config().getInteger(ParallelMainVerticle.SLAVES_CONFIG_KEY);
+        if (slavesNumber == null) {
+            throw new IllegalArgumentException("You should specify the slaves number in the configuration file");
+        }
+        Integer slaveId = config().getInteger(SLAVE_CONFIG_KEY);
+        if (slaveId == null || slaveId < 0 || slaveId >= slavesNumber) {
+            throw new IllegalArgumentException("You should specify the slave number between 0 and "
+                    + (slavesNumber - 1) + " in the configuration file");
+        }
+        id = slaveId;
+        execution = ExecutionModel.parse(config().getString(ParallelMainVerticle.EXECUTION_CONFIG_KEY,
+                ExecutionModel.EVENT_LOOP.toString()));
+        tree = AggregationTree.build(slavesNumber, config().getInteger(ParallelMainVerticle.FAN_IN_CONFIG_KEY));
+        compression = Compression.parse(config().getString(ParallelMainVerticle.COMPRESSION_CONFIG_KEY,
+                Compression.NONE.toString()));
+
+        int size;
+        if (OptimizerOptions.isLoadedIntoHeap(config())) {
+            InputFileReader reader = new InputFileReader(inputFilename);
+            size = reader.getSize();
+            dataset = reader.getDataset(ParallelMainVerticle.partitionBound(id, slavesNumber, size),
+                    ParallelMainVerticle.partitionBound(id + 1, slavesNumber, size));
+        } else {
+            Dataset whole = OptimizerOptions.loadDataset(config(), inputFilename);
+            size = whole.size();
+            dataset = whole.subset(ParallelMainVerticle.partitionBound(id, slavesNumber, size),
+                    ParallelMainVerticle.partitionBound(id + 1, slavesNumber, size));
+        }
+
+        topK = ParallelMainVerticle.topK(config(), dataset.dimensiality());
+
+        Integer globalBatchSize = config().getInteger(OptimizerOptions.BATCH_SIZE_CONFIG_KEY);
+        if (globalBatchSize != null) {
+            batchSize = ParallelMainVerticle.localBatchSize(globalBatchSize, dataset.size(), size);
+            seed = config().getLong(OptimizerOptions.SEED_CONFIG_KEY, System.nanoTime());
+        }
+    }
+
+    private JsonObject readiness() {
+        return new JsonObject()
+                .put(SLAVE_CONFIG_KEY, id)
+                .put(ParallelMainVerticle.COMPRESSION_CONFIG_KEY, compression.toString());
+    }
+
+    private void handleWeights(WeightsMessage message) {
+        if (message.weightsDelta != null) {
+            if (!ownWeights) {
+                weights = weights.clone();
+                ownWeights = true;
+            }
+            message.weightsDelta.addTo(weights);
+        } else {
+            weights = message.weights;
+            ownWeights = false;
+        }
+
+        if (pendingWeights == null || message.version > pendingWeights.version) {
+            pendingWeights = message;
+        }
+        if (!calculating) {
+            calculating = true;
+            vertx.runOnContext(v -> calculateLocalFunctions());
+        }
+    }
+
+    private void calculateLocalFunctions() {
+        WeightsMessage latestWeights = pendingWeights;
+        pendingWeights = null;
+        if (latestWeights.weightsDelta != null) {
+            if (weightsSnapshot == null) {
+                weightsSnapshot = new double[weights.length];
+            }
+            System.arraycopy(weights, 0, weightsSnapshot, 0, weights.length);
+            calculatedWeights = weightsSnapshot;
+        } else {
+            calculatedWeights = latestWeights.weights;
+        }
+
+        double[] currentWeights = calculatedWeights;
+        calculate(() -> calculateLocalSums(latestWeights.version, currentWeights, latestWeights.partitionBounds),
+                message -> vertx.eventBus().send(tree != null
+                        ? tree.parentSumsAddress(0, id)
+                        : ParallelMainVerticle.LOCAL_SUMS_MESSAGE_ADDRESS, message),
+                () -> {
+                    if (pendingWeights != null) {
+                        calculateLocalFunctions();
+                    } else {
+                        calculating = false;
+                    }
+                });
+    }
+
+    private void calculateGramStatistics() {
+        calculate(() -> {
+            GramStatistics statistics = new GramStatistics(dataset.dimensiality());
+            statistics.add(dataset);
+            return new GramStatisticsMessage(id, statistics);
+        }, message -> vertx.eventBus().send(ParallelMainVerticle.GRAM_STATISTICS_MESSAGE_ADDRESS, message));
+    }
+
+    private void calculateDirectionalSums(DirectionMessage message) {
+        double[] currentWeights = calculatedWeights;
+        calculate(() -> new DirectionalSumsMessage(id, message.version,
+                        partition.directionalSums(currentWeights, message.direction)),
+                sums -> vertx.eventBus().send(ParallelMainVerticle.DIRECTIONAL_SUMS_MESSAGE_ADDRESS, sums));
+    }
+
+    private <T> void calculate(Supplier<T> calculation, Consumer<T> resultHandler) {
+        calculate(calculation, resultHandler, () -> {
+        });
+    }
+
+    private <T> void calculate(Supplier<T> calculation, Consumer<T> resultHandler, Runnable completionHandler) {
+        if (executor == null) {
+            try {
+                resultHandler.accept(calculation.get());
+            } finally {
+                completionHandler.run();
+            }
+            return;
+        }
+
+        executor.<T>executeBlocking(future -> future.complete(calculation.get()), ar -> {
+            if (ar.succeeded()) {
+                resultHandler.accept(ar.result());
+            } else {
+                System.err.println("Couldn't complete the calculation: " + ar.cause().getLocalizedMessage());
+            }
+            completionHandler.run();
+        });
+    }
+
+    private LocalSumsMessage calculateLocalSums(int version, double[] weights, int[] partitionBounds) {
+        if (localGradient == null || asynchronous) {
+            localGradient = new double[weights.length];
+        }
 
-        List<Double> localGradient = new ArrayList<>(weights.size());
-        for (int i = 0; i < weights.size(); i++) {
-            final int fCoordIndex = i;
-            localGradient.add(points.stream()
-                    .map(point -> GradientDescent.pointGradient(fCoordIndex, weights, point))
-                    .reduce(0.0, Double::sum));
+        if (partitionBounds == null) {
+            partition = dataset;
+        } else if (partition == null
+                || partitionFrom != partitionBounds[id] || partitionTo != partitionBounds[id + 1]) {
+            partitionFrom = partitionBounds[id];
+            partitionTo = partitionBounds[id + 1];
+            partition = dataset.subset(partitionFrom, partitionTo);
         }
 
-        vertx.eventBus().send(ParallelMainVerticle.LOCAL_SUMS_MESSAGE_ADDRESS,
-                new LocalSumsMessage(id, localCostFunction, localGradient).toJSON());
+        long computeStartTime = System.nanoTime();
+
+        double localCostFunction;
+        int pointsNumber;
+        if (sampler != null) {
+            localCostFunction = GradientDescent.localSums(weights, partition,
+                    sampler.rows(), sampler.from(), sampler.to(), localGradient);
+            pointsNumber = sampler.to() - sampler.from();
+            sampler.next();
+        } else {
+            localCostFunction = GradientDescent.localSums(weights, partition, localGradient);
+            pointsNumber = partition.size();
+        }
+        long computeTime = System.nanoTime() - computeStartTime;
+
+        if (compression != Compression.NONE) {
+            return new LocalSumsMessage(id, version, localCostFunction, compressGradient(), pointsNumber,
+                    computeTime);
+        }
+        return new LocalSumsMessage(id, version, localCostFunction, localGradient, pointsNumber, computeTime);
+    }
+
+    private CompressedVector compressGradient() {
+        if (sentGradient == null) {
+            sentGradient = new double[localGradient.length];
+            gradientDelta = new double[localGradient.length];
+        }
+        for (int i = 0; i < localGradient.length; i++) {
+            gradientDelta[i] = localGradient[i] - sentGradient[i];
+        }
+        CompressedVector compressedDelta = CompressedVector.compress(compression, gradientDelta, topK);
+        compressedDelta.addTo(sentGradient);
+        return compressedDelta;
     }
 }
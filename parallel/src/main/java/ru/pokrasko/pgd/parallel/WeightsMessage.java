@@ -0,0 +1,19 @@
+package ru.pokrasko.pgd.parallel;
+
+class WeightsMessage {
+    int version;
+    double[] weights;
+    CompressedVector weightsDelta;
+    int[] partitionBounds;
+
+    WeightsMessage(int version, double[] weights, int[] partitionBounds) {
+        this.version = version;
+        this.weights = weights;
+        this.partitionBounds = partitionBounds;
+    }
+
+    WeightsMessage(int version, CompressedVector weightsDelta, int[] partitionBounds) {
+        this(version, (double[]) null, partitionBounds);
+        this.weightsDelta = weightsDelta;
+    }
+}
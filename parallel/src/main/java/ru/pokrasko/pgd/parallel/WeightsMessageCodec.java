@@ -0,0 +1,79 @@
+package ru.pokrasko.pgd.parallel;
+
+import io.vertx.core.buffer.Buffer;
+import ru.pokrasko.pgd.common.OptimizationMetrics;
+
+class WeightsMessageCodec extends CountingMessageCodec<WeightsMessage> {
+    WeightsMessageCodec(OptimizationMetrics metrics) {
+        super(metrics);
+    }
+
+    @Override
+    void encode(Buffer buffer, WeightsMessage message) {
+        buffer.appendInt(message.version);
+        if (message.weightsDelta != null) {
+            buffer.appendByte((byte) 1);
+            message.weightsDelta.encode(buffer);
+        } else {
+            buffer.appendByte((byte) 0);
+            encodeDoubles(buffer, message.weights);
+        }
+        if (message.partitionBounds != null) {
+            buffer.appendInt(message.partitionBounds.length);
+            for (int bound : message.partitionBounds) {
+                buffer.appendInt(bound);
+            }
+        } else {
+            buffer.appendInt(-1);
+        }
+    }
+
+    @Override
+    WeightsMessage decode(int position, Buffer buffer) {
+        int version = buffer.getInt(position);
+        boolean delta = buffer.getByte(position + Integer.BYTES) != 0;
+        position += Integer.BYTES + 1;
+        double[] weights = null;
+        CompressedVector weightsDelta = null;
+        if (delta) {
+            weightsDelta = CompressedVector.decode(position, buffer);
+            position += weightsDelta.encodedLength();
+        } else {
+            weights = decodeDoubles(position, buffer);
+            position += Integer.BYTES + weights.length * Double.BYTES;
+        }
+
+        int boundsNumber = buffer.getInt(position);
+        int[] partitionBounds = null;
+        if (boundsNumber >= 0) {
+            partitionBounds = new int[boundsNumber];
+            for (int i = 0; i < boundsNumber; i++) {
+                partitionBounds[i] = buffer.getInt(position + (i + 1) * Integer.BYTES);
+            }
+        }
+        return delta
+                ? new WeightsMessage(version, weightsDelta, partitionBounds)
+                : new WeightsMessage(version, weights, partitionBounds);
+    }
+
+    @Override
+    public String name() {
+        return "weights";
+    }
+
+    static void encodeDoubles(Buffer buffer, double[] values) {
+        buffer.appendInt(values.length);
+        for (double value : values) {
+            buffer.appendDouble(value);
+        }
+    }
+
+    static double[] decodeDoubles(int position, Buffer buffer) {
+        double[] values = new double[buffer.getInt(position)];
+        position += Integer.BYTES;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = buffer.getDouble(position + i * Double.BYTES);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,97 @@
+package ru.pokrasko.pgd.parallel;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CompressedVectorTest {
+    private static final double[] VECTOR = {0.5, -4, 1.25, 3, -0.75, 4, 0, -2};
+
+    @Test
+    public void keepsTopKMagnitudes() {
+        CompressedVector vector = roundTrip(CompressedVector.compress(Compression.TOP_K, VECTOR, 3));
+
+        assertEquals(Compression.TOP_K, vector.compression);
+        assertArrayEquals(new int[] {1, 3, 5}, vector.indices);
+        assertArrayEquals(new double[] {0, -4, 0, 3, 0, 4, 0, 0}, vector.decode(), 0);
+    }
+
+    @Test
+    public void keepsTopKWithTies() {
+        double[] ties = {1, -1, 1, 0.5};
+        CompressedVector vector = CompressedVector.compress(Compression.TOP_K, ties, 2);
+
+        assertArrayEquals(new double[] {1, -1, 0, 0}, vector.decode(), 0);
+        assertArrayEquals(ties, CompressedVector.compress(Compression.TOP_K, ties, 10).decode(), 0);
+    }
+
+    @Test
+    public void roundsToBfloat16() {
+        CompressedVector vector = roundTrip(CompressedVector.compress(Compression.BFLOAT16, VECTOR, 0));
+        assertArrayEquals(VECTOR, vector.decode(), 0);
+
+        double[] decoded = roundTrip(CompressedVector.compress(Compression.BFLOAT16,
+                new double[] {Math.PI, -1e-3, 65537}, 0)).decode();
+        assertEquals(Math.PI, decoded[0], Math.PI / 256);
+        assertEquals(-1e-3, decoded[1], 1e-3 / 256);
+        assertEquals(65536, decoded[2], 0);
+    }
+
+    @Test
+    public void quantizesToInt8() {
+        CompressedVector vector = roundTrip(CompressedVector.compress(Compression.INT8, VECTOR, 0));
+        double[] decoded = vector.decode();
+
+        assertEquals(4.0 / Byte.MAX_VALUE, vector.scale, 0);
+        assertEquals(-4, decoded[1], 1e-15);
+        assertEquals(4, decoded[5], 1e-15);
+        for (int i = 0; i < VECTOR.length; i++) {
+            assertEquals(VECTOR[i], decoded[i], vector.scale / 2);
+        }
+        assertArrayEquals(new double[3],
+                roundTrip(CompressedVector.compress(Compression.INT8, new double[3], 0)).decode(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNoCompression() {
+        CompressedVector.compress(Compression.NONE, VECTOR, 0);
+    }
+
+    @Test
+    public void errorFeedbackConverges() {
+        Random random = new Random(1);
+        double[] target = new double[100];
+        for (int i = 0; i < target.length; i++) {
+            target[i] = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(4));
+        }
+
+        for (Compression compression : new Compression[] {Compression.TOP_K, Compression.BFLOAT16,
+                Compression.INT8}) {
+            double[] sent = new double[target.length];
+            double[] received = new double[target.length];
+            double[] delta = new double[target.length];
+            for (int round = 0; round < 20; round++) {
+                for (int i = 0; i < target.length; i++) {
+                    delta[i] = target[i] - sent[i];
+                }
+                CompressedVector compressedDelta = CompressedVector.compress(compression, delta,
+                        Compression.defaultTopK(target.length));
+                compressedDelta.addTo(sent);
+                roundTrip(compressedDelta).addTo(received);
+            }
+
+            assertArrayEquals(compression.toString(), sent, received, 0);
+            assertArrayEquals(compression.toString(), target, received, 1e-9);
+        }
+    }
+
+    private static CompressedVector roundTrip(CompressedVector vector) {
+        Buffer buffer = Buffer.buffer().appendByte((byte) 1);
+        vector.encode(buffer);
+        assertEquals(1 + vector.encodedLength(), buffer.length());
+        return CompressedVector.decode(1, buffer);
+    }
+}
@@ -0,0 +1,28 @@
+package ru.pokrasko.pgd.parallel;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DirectionMessageCodecTest {
+    @Test
+    public void decodesEncodedMessage() {
+        DirectionMessageCodec codec = new DirectionMessageCodec(null);
+        Buffer buffer = Buffer.buffer().appendInt(-1);
+        codec.encodeToWire(buffer, new DirectionMessage(17, new double[] {1.5, -2.25, Double.MIN_VALUE}));
+
+        DirectionMessage message = codec.decodeFromWire(Integer.BYTES, buffer);
+        assertEquals(17, message.version);
+        assertArrayEquals(new double[] {1.5, -2.25, Double.MIN_VALUE}, message.direction, 0);
+    }
+
+    @Test
+    public void decodesEmptyDirection() {
+        DirectionMessageCodec codec = new DirectionMessageCodec(null);
+        Buffer buffer = Buffer.buffer();
+        codec.encodeToWire(buffer, new DirectionMessage(0, new double[0]));
+
+        assertEquals(0, codec.decodeFromWire(0, buffer).direction.length);
+    }
+}
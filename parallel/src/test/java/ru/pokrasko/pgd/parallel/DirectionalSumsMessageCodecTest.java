@@ -0,0 +1,20 @@
+package ru.pokrasko.pgd.parallel;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DirectionalSumsMessageCodecTest {
+    @Test
+    public void decodesEncodedMessage() {
+        DirectionalSumsMessageCodec codec = new DirectionalSumsMessageCodec(null);
+        Buffer buffer = Buffer.buffer().appendLong(-1);
+        codec.encodeToWire(buffer, new DirectionalSumsMessage(3, 42, new double[] {-12.5, 1e300}));
+
+        DirectionalSumsMessage message = codec.decodeFromWire(Long.BYTES, buffer);
+        assertEquals(3, message.slaveId);
+        assertEquals(42, message.version);
+        assertArrayEquals(new double[] {-12.5, 1e300}, message.sums, 0);
+    }
+}
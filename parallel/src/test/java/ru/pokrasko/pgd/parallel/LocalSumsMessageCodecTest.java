@@ -0,0 +1,52 @@
+package ru.pokrasko.pgd.parallel;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LocalSumsMessageCodecTest {
+    private static final double[] GRADIENT = {-0.5, 3.75, 1e10, 0};
+
+    @Test
+    public void decodesLocalGradient() {
+        LocalSumsMessage message = roundTrip(new LocalSumsMessage(2, 17, 123.5, GRADIENT, 1000, 987654321012L));
+
+        assertEquals(2, message.slaveId);
+        assertEquals(17, message.version);
+        assertEquals(123.5, message.localCostFunction, 0);
+        assertArrayEquals(GRADIENT, message.localGradient, 0);
+        assertNull(message.compressedGradient);
+        assertEquals(1000, message.pointsNumber);
+        assertEquals(987654321012L, message.computeTime);
+        assertEquals(GRADIENT.length, message.gradientLength());
+    }
+
+    @Test
+    public void decodesCompressedGradients() {
+        for (Compression compression : new Compression[] {Compression.TOP_K, Compression.BFLOAT16,
+                Compression.INT8}) {
+            CompressedVector gradient = CompressedVector.compress(compression, GRADIENT, 1);
+            LocalSumsMessage message = roundTrip(new LocalSumsMessage(0, 3, 0.25, gradient, 10, -1));
+
+            assertEquals(3, message.version);
+            assertEquals(0.25, message.localCostFunction, 0);
+            assertNull(message.localGradient);
+            assertEquals(compression, message.compressedGradient.compression);
+            assertEquals(10, message.pointsNumber);
+            assertEquals(-1, message.computeTime);
+            assertEquals(GRADIENT.length, message.gradientLength());
+
+            double[] sum = new double[GRADIENT.length];
+            message.addGradientTo(sum);
+            assertArrayEquals(compression.toString(), gradient.decode(), sum, 0);
+        }
+    }
+
+    private static LocalSumsMessage roundTrip(LocalSumsMessage message) {
+        LocalSumsMessageCodec codec = new LocalSumsMessageCodec(null);
+        Buffer buffer = Buffer.buffer().appendByte((byte) 0);
+        codec.encodeToWire(buffer, message);
+        return codec.decodeFromWire(1, buffer);
+    }
+}
@@ -0,0 +1,77 @@
+package ru.pokrasko.pgd.parallel;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.Test;
+import ru.pokrasko.pgd.common.OptimizationMetrics;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class WeightsMessageCodecTest {
+    private static final double[] WEIGHTS = {1.5, -2.25, 0, 1e-300};
+
+    @Test
+    public void decodesWeightsWithPartitionBounds() {
+        WeightsMessage message = roundTrip(new WeightsMessage(5, WEIGHTS, new int[] {0, 10, 25, 40}));
+
+        assertEquals(5, message.version);
+        assertArrayEquals(WEIGHTS, message.weights, 0);
+        assertNull(message.weightsDelta);
+        assertArrayEquals(new int[] {0, 10, 25, 40}, message.partitionBounds);
+    }
+
+    @Test
+    public void decodesWeightsWithoutPartitionBounds() {
+        WeightsMessage message = roundTrip(new WeightsMessage(0, WEIGHTS, null));
+
+        assertArrayEquals(WEIGHTS, message.weights, 0);
+        assertNull(message.partitionBounds);
+    }
+
+    @Test
+    public void decodesEmptyPartitionBounds() {
+        WeightsMessage message = roundTrip(new WeightsMessage(1, new double[0], new int[0]));
+
+        assertEquals(0, message.weights.length);
+        assertArrayEquals(new int[0], message.partitionBounds);
+    }
+
+    @Test
+    public void decodesWeightsDeltas() {
+        for (Compression compression : new Compression[] {Compression.TOP_K, Compression.BFLOAT16,
+                Compression.INT8}) {
+            CompressedVector delta = CompressedVector.compress(compression, WEIGHTS, 2);
+            WeightsMessage message = roundTrip(new WeightsMessage(9, delta, new int[] {0, 3}));
+
+            assertEquals(9, message.version);
+            assertNull(message.weights);
+            assertEquals(compression, message.weightsDelta.compression);
+            assertArrayEquals(compression.toString(), delta.decode(), message.weightsDelta.decode(), 0);
+            assertArrayEquals(new int[] {0, 3}, message.partitionBounds);
+
+            assertNull(roundTrip(new WeightsMessage(9, delta, null)).partitionBounds);
+        }
+    }
+
+    @Test
+    public void countsEncodedBytes() throws IOException {
+        OptimizationMetrics metrics = new OptimizationMetrics(null);
+        WeightsMessageCodec codec = new WeightsMessageCodec(metrics);
+        Buffer buffer = Buffer.buffer();
+        codec.encodeToWire(buffer, new WeightsMessage(2, WEIGHTS, new int[] {0, 4}));
+        codec.decodeFromWire(0, buffer);
+
+        assertEquals(Integer.BYTES + 1 + Integer.BYTES + WEIGHTS.length * Double.BYTES + 3 * Integer.BYTES,
+                metrics.bytesWritten().getCount());
+        assertEquals(buffer.length(), metrics.bytesRead().getCount());
+        metrics.close();
+    }
+
+    private static WeightsMessage roundTrip(WeightsMessage message) {
+        WeightsMessageCodec codec = new WeightsMessageCodec(null);
+        Buffer buffer = Buffer.buffer().appendShort((short) -1);
+        codec.encodeToWire(buffer, message);
+        return codec.decodeFromWire(Short.BYTES, buffer);
+    }
+}
@@ -2,90 +2,317 @@ package ru.pokrasko.pgd.singleflow;
 
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Future;
+import ru.pokrasko.pgd.common.Checkpoint;
+import ru.pokrasko.pgd.common.Dataset;
 import ru.pokrasko.pgd.common.GradientDescent;
+import ru.pokrasko.pgd.common.GramStatistics;
 import ru.pokrasko.pgd.common.InputFileReader;
-import ru.pokrasko.pgd.common.Point;
+import ru.pokrasko.pgd.common.LearningRateSchedule;
+import ru.pokrasko.pgd.common.MiniBatchSampler;
+import ru.pokrasko.pgd.common.OptimizationMetrics;
+import ru.pokrasko.pgd.common.OptimizerOptions;
+import ru.pokrasko.pgd.common.StepPolicy;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.io.IOException;
+import java.util.function.BiFunction;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.ToDoubleBiFunction;
 
 public class SingleFlowOptimizer extends AbstractVerticle {
-    public static final String INPUT_CONFIG_KEY = "input";
-    public static final String OUTPUT_CONFIG_KEY = "output";
-    public static final String CONVERGENCE_CONFIG_KEY = "convergence";
+    public static final String INPUT_CONFIG_KEY = OptimizerOptions.INPUT_CONFIG_KEY;
+    public static final String OUTPUT_CONFIG_KEY = OptimizerOptions.OUTPUT_CONFIG_KEY;
+    public static final String CONVERGENCE_CONFIG_KEY = OptimizerOptions.CONVERGENCE_CONFIG_KEY;
+    public static final String INCREMENTAL_CONFIG_KEY = "incremental";
+    public static final String POLL_INTERVAL_CONFIG_KEY = "pollInterval";
 
+    private static final long DEFAULT_POLL_INTERVAL = 1000;
+
+    private OptimizerOptions options;
     private String outputFilename;
+    private double convergence;
+    private String checkpointFilename;
+    private int checkpointInterval;
+    private int iterations;
+    private int epochs;
+    private boolean solved;
+    private StepPolicy stepPolicy;
+    private OptimizationMetrics metrics;
+    private Dataset dataset;
+
+    private int consumedSize;
+    private double[] currentWeights;
+    private boolean updating;
 
     @Override
     public void start(Future<Void> future) throws Exception {
         try {
-            String inputFilename = config().getString(INPUT_CONFIG_KEY);
-            if (inputFilename == null) {
-                throw new IllegalArgumentException("You should specify input file name in the configuration file");
+            options = new OptimizerOptions(config());
+            outputFilename = options.outputFilename();
+            convergence = options.convergence();
+            Integer batchSize = options.batchSize();
+            stepPolicy = batchSize == null ? options.stepPolicy() : null;
+            checkpointFilename = options.checkpointFilename();
+            checkpointInterval = options.checkpointInterval();
+            boolean normal = options.isNormal();
+            metrics = options.metrics();
+
+            if (config().getBoolean(INCREMENTAL_CONFIG_KEY, false)) {
+                if (batchSize != null || options.isMapped() || options.isStreaming()) {
+                    throw new IllegalArgumentException("Incremental mode can't be used with "
+                            + "mini-batch gradient descent, mapped or streaming input");
+                }
+                InputFileReader reader = new InputFileReader(options.inputFilename());
+                if (reader.isSparse()) {
+                    throw new IllegalArgumentException("Incremental mode can't be used with sparse input files");
+                }
+                startIncrementalUpdates(reader, options.maxIterations(), normal);
+                future.complete();
+                return;
             }
-            outputFilename = config().getString(OUTPUT_CONFIG_KEY);
-            Double convergence = config().getDouble(CONVERGENCE_CONFIG_KEY);
-            if (convergence == null) {
-                throw new IllegalArgumentException("You should specify convergence value in the configuration file");
+
+            dataset = prepareDataset(options.loadDataset());
+            Checkpoint state = options.restoreCheckpoint(dataset.dimensiality());
+
+            try {
+                long startTime = System.currentTimeMillis();
+                if (metrics != null) {
+                    metrics.start();
+                }
+
+                double[] weights = normal ? solveNormalEquations(dataset) : null;
+                if (weights == null) {
+                    weights = batchSize != null
+                            ? descendByMiniBatches(dataset, new MiniBatchSampler(dataset.size(), batchSize,
+                                    options.seed()), options.schedule(), options.maxEpochs(), state)
+                            : descend((weightsPoint, gradient) ->
+                                            GradientDescent.costAndGradient(weightsPoint, dataset, gradient),
+                                    dataset::directionalSums, dataset.size(), options.maxIterations(), state);
+                }
+                printResult(weights, startTime);
+            } finally {
+                if (metrics != null) {
+                    metrics.close();
+                }
             }
 
-            List<Point> points = new InputFileReader(inputFilename).getPoints();
-            List<Double> oldWeights = null;
-            double oldCostFunction;
-            List<Double> oldGradient;
+            future.complete();
+            exit();
+        } catch (Exception e) {
+            future.fail(e);
+            exit();
+        }
+    }
+
+    @Override
+    public void stop() throws Exception {
+        if (dataset != null) {
+            dataset.close();
+        }
+    }
+
+    private void startIncrementalUpdates(InputFileReader reader, int maxIterations, boolean normal)
+            throws IOException {
+        GramStatistics statistics = new GramStatistics(reader.getDimensiality());
+        currentWeights = options.restoreCheckpoint(reader.getDimensiality()).weights();
 
-            long startTime = System.currentTimeMillis();
+        scheduleIncrementalUpdate(reader, statistics, maxIterations, normal);
+        vertx.setPeriodic(config().getLong(POLL_INTERVAL_CONFIG_KEY, DEFAULT_POLL_INTERVAL),
+                id -> scheduleIncrementalUpdate(reader, statistics, maxIterations, normal));
+    }
 
-            List<Double> newWeights = new ArrayList<>(Collections.nCopies(GradientDescent.dimensiality(points) + 1,
-                    1.0));
-            double newCostFunction = GradientDescent.costFunction(newWeights, points);
-            List<Double> newGradient = null;
+    private void scheduleIncrementalUpdate(InputFileReader reader, GramStatistics statistics, int maxIterations,
+                                           boolean normal) {
+        if (updating) {
+            return;
+        }
+        updating = true;
+        vertx.<Void>executeBlocking(update -> {
+            try {
+                updateIncrementally(reader, statistics, maxIterations, normal);
+                update.complete();
+            } catch (IOException e) {
+                update.fail(e);
+            }
+        }, ar -> {
+            updating = false;
+            if (ar.failed()) {
+                System.err.println("Couldn't read appended points: " + ar.cause().getLocalizedMessage());
+            }
+        });
+    }
 
-            int iterations = 0;
-            do {
-                iterations++;
+    private void updateIncrementally(InputFileReader reader, GramStatistics statistics, int maxIterations,
+                                     boolean normal) throws IOException {
+        int availableSize = reader.getAvailableSize();
+        if (availableSize <= consumedSize) {
+            return;
+        }
+        statistics.add(reader.getDataset(consumedSize, availableSize));
+        consumedSize = availableSize;
 
-                oldGradient = newGradient;
-                newGradient = new ArrayList<>();
-                for (int i = 0; i < newWeights.size(); i++) {
-                    final int fCoordIndex = i;
-                    final List<Double> fWeights = newWeights;
-                    double gradientSum = points.stream()
-                            .map(point -> GradientDescent.pointGradient(fCoordIndex, fWeights, point))
-                            .reduce(0.0, Double::sum);
+        long startTime = System.currentTimeMillis();
+        if (metrics != null) {
+            metrics.start();
+        }
+        iterations = 0;
+        double[] solution = normal && statistics.dimensiality() <= OptimizerOptions.MAX_NORMAL_DIMENSIALITY
+                ? solve(statistics)
+                : null;
+        if (solution == null) {
+            stepPolicy = options.stepPolicy();
+        }
+        currentWeights = solution != null
+                ? solution
+                : descend(statistics::costAndGradient, statistics::directionalSums, statistics.size(), maxIterations,
+                        new Checkpoint(0, 0, 0.0, currentWeights, null, null));
+        printResult(currentWeights, startTime);
+        if (metrics != null) {
+            metrics.flush();
+        }
+    }
 
-                    newGradient.add(gradientSum / points.size());
-                }
+    private double[] solveNormalEquations(Dataset dataset) {
+        if (dataset.dimensiality() > OptimizerOptions.MAX_NORMAL_DIMENSIALITY) {
+            System.out.printf("Dimensiality %d is too high for the normal equations solver, "
+                    + "gradient descent is used\n", dataset.dimensiality());
+            return null;
+        }
+        return solve(gramStatistics(dataset));
+    }
+
+    private double[] solve(GramStatistics statistics) {
+        double[] weights = statistics.solve();
+        solved = weights != null;
+        if (!solved) {
+            System.out.println("The normal equations are ill-conditioned, gradient descent is used");
+        }
+        return weights;
+    }
+
+    private double[] descend(ToDoubleBiFunction<double[], double[]> costAndGradient,
+                             BiFunction<double[], double[], double[]> directionalSums, long size, int maxIterations,
+                             Checkpoint state) {
+        state.restoreStepPolicy(stepPolicy);
 
-                double gradientStep = oldWeights != null
-                        ? GradientDescent.updateGradientStep(oldWeights, newWeights, oldGradient, newGradient)
-                        : 1.0;
+        double[] weights = state.weights();
+        double[] newWeights = new double[weights.length];
+        double[] gradient = new double[weights.length];
+        double costFunction = state.costFunction();
+        iterations = state.iterations();
 
-                oldWeights = newWeights;
-                newWeights = new ArrayList<>();
-                for (int i = 0; i < newGradient.size(); i++) {
-                    newWeights.add(oldWeights.get(i) - gradientStep * newGradient.get(i));
+        while (true) {
+            iterations++;
+
+            double oldCostFunction = costFunction;
+            costFunction = costAndGradient.applyAsDouble(weights, gradient);
+            if (iterations > 1 && GradientDescent.checkConvergence(oldCostFunction, costFunction, convergence)
+                    || iterations >= maxIterations) {
+                if (metrics != null) {
+                    metrics.iterationFinished(iterations, costFunction, Double.NaN);
                 }
+                return weights;
+            }
 
-                oldCostFunction = newCostFunction;
-                newCostFunction = GradientDescent.costFunction(newWeights, points);
-            } while (!GradientDescent.checkConvergence(oldCostFunction, newCostFunction, convergence));
-            printResult(newWeights, startTime, iterations);
+            DoubleUnaryOperator lineCost = stepPolicy.searchesLine()
+                    ? GradientDescent.lineCost(costFunction, directionalSums.apply(weights, gradient), size)
+                    : null;
+            double gradientStep = stepPolicy.update(weights, costFunction, gradient, lineCost, newWeights);
+            if (metrics != null) {
+                metrics.iterationFinished(iterations, costFunction, gradientStep);
+            }
+            if (!Double.isFinite(gradientStep)) {
+                return weights;
+            }
 
-            future.complete();
-            vertx.close();
-        } catch (Exception e) {
-            future.fail(e);
-            vertx.close();
+            double[] swap = weights;
+            weights = newWeights;
+            newWeights = swap;
+
+            if (checkpointFilename != null && iterations % checkpointInterval == 0) {
+                new Checkpoint(iterations, 0, costFunction, weights, stepPolicy.type(), stepPolicy.state())
+                        .tryWrite(checkpointFilename);
+            }
         }
     }
 
-    private void printResult(List<Double> weights, long startTime, int iterations) {
+    private double[] descendByMiniBatches(Dataset dataset, MiniBatchSampler sampler, LearningRateSchedule schedule,
+                                         int maxEpochs, Checkpoint state) {
+        double[] weights = state.weights();
+        double[] gradient = new double[weights.length];
+        double residualSquareSum = 0;
+        double costFunction = state.costFunction();
+        iterations = state.iterations();
+        epochs = state.epochs();
+
+        while (true) {
+            iterations++;
+
+            double learningRate = schedule.learningRate(epochs) / (sampler.to() - sampler.from());
+            residualSquareSum += GradientDescent.localSums(weights, dataset,
+                    sampler.rows(), sampler.from(), sampler.to(), gradient);
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] -= learningRate * gradient[i];
+            }
+
+            if (!sampler.next()) {
+                epochs++;
+
+                double oldCostFunction = costFunction;
+                costFunction = residualSquareSum / dataset.size();
+                residualSquareSum = 0;
+                if (metrics != null) {
+                    metrics.iterationFinished(iterations, costFunction, learningRate);
+                }
+                if (epochs > 1 && GradientDescent.checkConvergence(oldCostFunction, costFunction, convergence)
+                        || epochs >= maxEpochs) {
+                    return weights;
+                }
+
+                if (checkpointFilename != null && epochs % checkpointInterval == 0) {
+                    new Checkpoint(iterations, epochs, costFunction, weights, null, null)
+                            .tryWrite(checkpointFilename);
+                }
+            } else if (metrics != null) {
+                metrics.iterationFinished(iterations, Double.NaN, learningRate);
+            }
+        }
+    }
+
+    protected Dataset prepareDataset(Dataset dataset) {
+        return dataset;
+    }
+
+    protected GramStatistics gramStatistics(Dataset dataset) {
+        GramStatistics statistics = new GramStatistics(dataset.dimensiality());
+        statistics.add(dataset);
+        return statistics;
+    }
+
+    protected void printDetails() {
+    }
+
+    protected void exit() {
+        vertx.close();
+    }
+
+    private void printResult(double[] weights, long startTime) {
         System.out.printf("Optimizing finished (%d ms)\n", System.currentTimeMillis() - startTime);
         System.out.println();
 
-        System.out.println("Amount of iterations: " + iterations);
+        printDetails();
+        System.out.println("Gradient kernel: " + GradientDescent.kernelName());
+
+        if (solved) {
+            System.out.println("The normal equations were solved directly");
+        } else {
+            System.out.println("Amount of iterations: " + iterations);
+            if (stepPolicy != null) {
+                System.out.println("Step policy: " + stepPolicy);
+            }
+        }
+        if (epochs > 0) {
+            System.out.println("Amount of epochs: " + epochs);
+        }
 
         if (outputFilename != null && GradientDescent.printWeightsToFile(weights, outputFilename)) {
             System.out.printf("Results are written into file \"%s\"\n", outputFilename);
@@ -93,6 +320,10 @@ public class SingleFlowOptimizer extends AbstractVerticle {
             GradientDescent.printWeightsToSystemOut(weights);
         }
 
+        if (metrics != null && options.reportsMetrics()) {
+            metrics.report(System.out);
+        }
+
         System.out.println();
         System.out.println();
     }
@@ -0,0 +1,73 @@
+package ru.pokrasko.pgd.vector;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import ru.pokrasko.pgd.common.GradientKernel;
+
+public class VectorGradientKernel implements GradientKernel {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public double linearValue(double[] weights, double[] coords, int offset) {
+        int dimensiality = weights.length - 1;
+        int bound = SPECIES.loopBound(dimensiality);
+
+        DoubleVector sums = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector weightsPart = DoubleVector.fromArray(SPECIES, weights, i);
+            sums = weightsPart.fma(DoubleVector.fromArray(SPECIES, coords, offset + i), sums);
+        }
+
+        double value = weights[dimensiality] + sums.reduceLanes(VectorOperators.ADD);
+        for (; i < dimensiality; i++) {
+            value += weights[i] * coords[offset + i];
+        }
+        return value;
+    }
+
+    @Override
+    public double accumulate(double[] weights, double[] coords, double[] values, int from, int to,
+                             double[] gradient) {
+        int dimensiality = weights.length - 1;
+
+        double residualSquareSum = 0;
+        for (int i = from; i < to; i++) {
+            residualSquareSum += accumulateRow(weights, coords, i * dimensiality, values[i], gradient);
+        }
+        return residualSquareSum;
+    }
+
+    @Override
+    public double accumulate(double[] weights, double[] coords, double[] values, int offset,
+                             int[] rows, int from, int to, double[] gradient) {
+        int dimensiality = weights.length - 1;
+
+        double residualSquareSum = 0;
+        for (int i = from; i < to; i++) {
+            int row = offset + rows[i];
+            residualSquareSum += accumulateRow(weights, coords, row * dimensiality, values[row], gradient);
+        }
+        return residualSquareSum;
+    }
+
+    private double accumulateRow(double[] weights, double[] coords, int offset, double value, double[] gradient) {
+        int dimensiality = weights.length - 1;
+        int bound = SPECIES.loopBound(dimensiality);
+
+        double residual = linearValue(weights, coords, offset) - value;
+
+        DoubleVector residuals = DoubleVector.broadcast(SPECIES, residual);
+        int j = 0;
+        for (; j < bound; j += SPECIES.length()) {
+            DoubleVector coordsPart = DoubleVector.fromArray(SPECIES, coords, offset + j);
+            coordsPart.fma(residuals, DoubleVector.fromArray(SPECIES, gradient, j)).intoArray(gradient, j);
+        }
+        for (; j < dimensiality; j++) {
+            gradient[j] += residual * coords[offset + j];
+        }
+        gradient[dimensiality] += residual;
+        return residual * residual;
+    }
+}
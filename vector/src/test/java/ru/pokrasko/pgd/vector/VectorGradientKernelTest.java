@@ -0,0 +1,84 @@
+package ru.pokrasko.pgd.vector;
+
+import org.junit.Before;
+import org.junit.Test;
+import ru.pokrasko.pgd.common.GradientKernel;
+import ru.pokrasko.pgd.common.ScalarGradientKernel;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class VectorGradientKernelTest {
+    private static final int SIZE = 50;
+    private static final int[] DIMENSIALITIES = {1, 3, 5, 7, 9, 13, 17, 31};
+    private static final double RELATIVE_DELTA = 1e-12;
+
+    private GradientKernel scalarKernel;
+    private GradientKernel vectorKernel;
+
+    @Before
+    public void createKernels() {
+        assumeTrue("jdk.incubator.vector is not available",
+                ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent());
+        scalarKernel = new ScalarGradientKernel();
+        vectorKernel = new VectorGradientKernel();
+    }
+
+    @Test
+    public void matchesScalarKernel() {
+        Random random = new Random(1);
+        for (int dimensiality : DIMENSIALITIES) {
+            double[] weights = randomArray(random, dimensiality + 1);
+            double[] coords = randomArray(random, SIZE * dimensiality);
+            double[] values = randomArray(random, SIZE);
+
+            assertEquals(scalarKernel.linearValue(weights, coords, dimensiality),
+                    vectorKernel.linearValue(weights, coords, dimensiality),
+                    RELATIVE_DELTA * Math.abs(scalarKernel.linearValue(weights, coords, dimensiality)));
+
+            double[] expectedGradient = new double[dimensiality + 1];
+            double[] gradient = new double[dimensiality + 1];
+            double expectedCost = scalarKernel.accumulate(weights, coords, values, 3, SIZE, expectedGradient);
+            double cost = vectorKernel.accumulate(weights, coords, values, 3, SIZE, gradient);
+            assertEquals("dimensiality " + dimensiality, expectedCost, cost, RELATIVE_DELTA * expectedCost);
+            assertGradientEquals(dimensiality, expectedGradient, gradient);
+        }
+    }
+
+    @Test
+    public void matchesScalarKernelOnSampledRows() {
+        Random random = new Random(2);
+        int[] rows = {7, 0, 12, 12, 3, 9};
+        for (int dimensiality : DIMENSIALITIES) {
+            double[] weights = randomArray(random, dimensiality + 1);
+            double[] coords = randomArray(random, SIZE * dimensiality);
+            double[] values = randomArray(random, SIZE);
+
+            double[] expectedGradient = new double[dimensiality + 1];
+            double[] gradient = new double[dimensiality + 1];
+            double expectedCost = scalarKernel.accumulate(weights, coords, values, 5, rows, 1, rows.length,
+                    expectedGradient);
+            double cost = vectorKernel.accumulate(weights, coords, values, 5, rows, 1, rows.length, gradient);
+            assertEquals("dimensiality " + dimensiality, expectedCost, cost, RELATIVE_DELTA * expectedCost);
+            assertGradientEquals(dimensiality, expectedGradient, gradient);
+        }
+    }
+
+    private static void assertGradientEquals(int dimensiality, double[] expected, double[] actual) {
+        double scale = 0;
+        for (double value : expected) {
+            scale = Math.max(scale, Math.abs(value));
+        }
+        assertArrayEquals("dimensiality " + dimensiality, expected, actual, RELATIVE_DELTA * scale);
+    }
+
+    private static double[] randomArray(Random random, int length) {
+        double[] array = new double[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = (random.nextDouble() - 0.5) * 20;
+        }
+        return array;
+    }
+}